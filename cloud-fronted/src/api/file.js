@@ -14,20 +14,33 @@ export const getFileList = (path, category, sort) => {
 
 
 
-export const checkUploadTask = (quickHash) => {
+// 创建或恢复上传会话，返回 sessionId 和已上传的分片
+export const checkUploadTask = (quickHash, { fileName, size, chunkSize, totalChunks, contentHash, path }) => {
   return request({
     url: '/api/file/check-upload',
     method: 'get',
-    params: { quickHash }
+    params: { quickHash, fileName, size, chunkSize, totalChunks, contentHash, path }
   })
 }
 
-export const uploadFile = (filename, chunk, index, totalChunks, options = {}) => {
+// 协商上传参数，服务端决定分片大小与建议并发数
+export const initUploadTask = (quickHash, { fileName, size, contentHash, path, transport = 'raw' }) => {
+  const params = new URLSearchParams()
+  Object.entries({ quickHash, fileName, size, contentHash, path, transport })
+    .forEach(([key, value]) => value !== undefined && value !== null && params.append(key, value))
+  return request({
+    url: '/api/file/upload-init',
+    method: 'post',
+    data: params
+  })
+}
+
+export const uploadFile = (sessionId, chunk, index, options = {}) => {
   const formData = new FormData()
-  formData.append('filename', filename)
+  formData.append('sessionId', sessionId)
   formData.append('file', chunk.chunk)
   formData.append('index', index)
-  formData.append('totalChunks', totalChunks)
+  if (options.chunkHash) formData.append('chunkHash', options.chunkHash)
   return request({
     url: '/api/file/upload',
     method: 'post',
@@ -36,12 +49,32 @@ export const uploadFile = (filename, chunk, index, totalChunks, options = {}) =>
   })
 }
 
-export const mergeFileChunks = (filename, size, chunksCount, path) => {
+// 以原始请求体上传分片，服务端直接写入目标文件，不经过 multipart 解析
+export const uploadFileRaw = (sessionId, chunk, index, offset, options = {}) => {
+  const headers = {
+    'Content-Type': 'application/octet-stream',
+    'X-Upload-Session': sessionId,
+    'X-Chunk-Index': index,
+    'X-Chunk-Offset': offset,
+    'X-Chunk-Length': chunk.size,
+  }
+  if (options.chunkHash) headers['X-Chunk-Hash'] = options.chunkHash
+  // 压缩上传时 data 为压缩后的数据，X-Chunk-Length 仍为原始分片大小
+  if (options.encoding) headers['Content-Encoding'] = options.encoding
+  return request({
+    url: '/api/file/upload/raw',
+    method: 'put',
+    data: options.body || chunk.chunk,
+    headers,
+    onUploadProgress: options.onUploadProgress,
+  })
+}
+
+export const mergeFileChunks = (sessionId, path, merkleRoot) => {
   const formData = new FormData()
-  formData.append('filename', filename)
-  formData.append('size', size)
-  formData.append('chunksCount', chunksCount)
+  formData.append('sessionId', sessionId)
   formData.append('path', path || 'my-files')
+  if (merkleRoot) formData.append('merkleRoot', merkleRoot)
   return request({
     url: '/api/file/merge',
     method: 'post',
@@ -49,6 +82,27 @@ export const mergeFileChunks = (filename, size, chunksCount, path) => {
   })
 }
 
+// 批量上传：一次请求携带多个完整小文件或分片，manifest 中每项通过 part 引用表单字段
+export const uploadBatch = (manifest, parts) => {
+  const formData = new FormData()
+  formData.append('manifest', JSON.stringify(manifest))
+  parts.forEach(({ part, file }) => formData.append(part, file))
+  return request({
+    url: '/api/file/upload/batch',
+    method: 'post',
+    data: formData,
+  })
+}
+
+// 查询合并任务进度
+export const getMergeStatus = (jobId) => {
+  return request({
+    url: '/api/file/merge/status',
+    method: 'get',
+    params: { jobId },
+  })
+}
+
 //上传头像
 export const uploadAvatar = (file) => {
   const formData = new FormData()
@@ -91,6 +145,26 @@ export const downloadFile = (fileId, fileName) => {
   })
 }
 
+// 获取签名下载链接，链接在有效期内无需 Authorization 头，可直接交给浏览器或 video/img 标签
+export const getDownloadUrl = (fileId, inline = false) => {
+  return request({
+    url: '/api/file/download-url',
+    method: 'get',
+    params: { fileId, inline },
+  })
+}
+
+// 打包下载文件及文件夹，服务端流式生成 ZIP
+export const downloadZip = (fileIds) => {
+  return request({
+    url: '/api/file/download-zip',
+    method: 'get',
+    params: { fileIds: fileIds.join(',') },
+    responseType: 'blob',
+    timeout: 0, // 打包耗时与文件总大小相关，不设超时
+  })
+}
+
 export const fileRename = (fileId, newName) => {
   return request({
     url: '/api/file/rename',
@@ -107,6 +181,33 @@ export const deleteFile = (fileId) => {
   })
 }
 
+// 批量删除（移入回收站），服务端在一个事务中完成，文件夹连同其内容
+export const deleteFiles = (fileIds) => {
+  return request({
+    url: '/api/file/delete/batch',
+    method: 'post',
+    data: new URLSearchParams({ fileIds: fileIds.join(',') }),
+  })
+}
+
+// 从回收站还原，已删除的上级目录一并还原
+export const restoreFiles = (fileIds) => {
+  return request({
+    url: '/api/file/restore',
+    method: 'post',
+    data: new URLSearchParams({ fileIds: fileIds.join(',') }),
+  })
+}
+
+// 移动文件或文件夹到目标目录
+export const moveFiles = (fileIds, path) => {
+  return request({
+    url: '/api/file/move',
+    method: 'post',
+    data: new URLSearchParams({ fileIds: fileIds.join(','), path }),
+  })
+}
+
 export const searchFiles = (searchQuery) => {
   return request({
     url: '/api/file/search',
@@ -118,13 +219,22 @@ export const searchFiles = (searchQuery) => {
 export default {
   getFileList,
   checkUploadTask,
+  initUploadTask,
   uploadFile,
+  uploadFileRaw,
+  uploadBatch,
   mergeFileChunks,
+  getMergeStatus,
   uploadAvatar,
   createFolder,
   createTextFile,
   downloadFile,
+  downloadZip,
+  getDownloadUrl,
   deleteFile,
+  deleteFiles,
+  restoreFiles,
+  moveFiles,
   fileRename,
   searchFiles,
 }
@@ -55,6 +55,10 @@ request.interceptors.response.use(
       message: error.message || '服务器异常'
     }
     const userStore = useUserStore();
+    // 服务端限流，由调用方按 Retry-After 重试，不提示
+    if (error.response?.status === 429) {
+      return Promise.reject(error);
+    }
     switch (error.response?.status) {
       case 401:
         res.title = '未授权'
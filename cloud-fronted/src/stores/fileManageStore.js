@@ -2,6 +2,7 @@
 import { ref } from 'vue';
 import { defineStore } from 'pinia';
 import fileApi from '@/api/file';
+import config from '@/config';
 import { safeLocalStorage } from '@/utils/storage';
 import usePathStore from './pathStore';
 
@@ -46,9 +47,26 @@ const useFileManageStore = defineStore('fileManage', () => {
   };
 
   const downloadFile = async (file) => {
-    // 调用下载API
-    const response = await fileApi.downloadFile(file.id, file.name);
+    // 由浏览器直接下载签名链接，不在内存中缓冲整个文件
+    const { data } = await fileApi.getDownloadUrl(file.id);
+    const link = document.createElement('a');
+    link.href = `${config.apiBaseUrl}${data.url}`;
+    link.download = file.name;
+    document.body.appendChild(link);
+    link.click();
+    document.body.removeChild(link);
+    return true;
+  };
+
+  // 打包下载多个文件或文件夹
+  const downloadZip = async (files) => {
+    const response = await fileApi.downloadZip(files.map(f => f.id));
+    const folderName = files.length === 1 ? files[0].name : `cloudown_${Date.now()}`;
+    saveBlob(response, `${folderName}.zip`);
+    return true;
+  };
 
+  const saveBlob = (response, fileName) => {
     // 创建Blob对象
     const blob = new Blob([response.data], {
       type: response.headers['content-type']
@@ -58,7 +76,7 @@ const useFileManageStore = defineStore('fileManage', () => {
     const downloadUrl = window.URL.createObjectURL(blob);
     const link = document.createElement('a');
     link.href = downloadUrl;
-    link.download = file.name;
+    link.download = fileName;
 
     // 添加到页面并触发点击
     document.body.appendChild(link);
@@ -67,8 +85,6 @@ const useFileManageStore = defineStore('fileManage', () => {
     // 清理
     window.URL.revokeObjectURL(downloadUrl);
     document.body.removeChild(link);
-
-    return true;
   };
 
   const deleteFile = async (file) => {
@@ -83,6 +99,26 @@ const useFileManageStore = defineStore('fileManage', () => {
     }
   }
 
+  // 批量删除，返回移入回收站的文件数；整批在服务端一个事务中完成，失败时不会只删除一部分
+  const deleteFiles = async (files) => {
+    const response = await fileApi.deleteFiles(files.map(f => f.id));
+    if (response.code !== 200) {
+      throw new Error(response.msg || '文件删除失败');
+    }
+    getFileList(); // 刷新文件列表
+    return response.data;
+  };
+
+  // 从回收站批量还原，返回还原的文件数
+  const restoreFiles = async (files) => {
+    const response = await fileApi.restoreFiles(files.map(f => f.id));
+    if (response.code !== 200) {
+      throw new Error(response.msg || '文件还原失败');
+    }
+    getFileList(); // 刷新文件列表
+    return response.data;
+  };
+
   const searchFiles = async (searchQuery) => {
     const response = await fileApi.searchFiles(searchQuery);
     if (response.code === 200) {
@@ -103,7 +139,10 @@ const useFileManageStore = defineStore('fileManage', () => {
     createFolder,
     createTextFile,
     downloadFile,
+    downloadZip,
     deleteFile,
+    deleteFiles,
+    restoreFiles,
     searchFiles
   }
 })
@@ -1,13 +1,96 @@
 // src/utils/chunkUpload.js
 import { calculateFileHash } from './fileHash';
-import { uploadFile, mergeFileChunks, checkUploadTask } from '@/api/file';
+import { uploadFileRaw, uploadBatch, mergeFileChunks, getMergeStatus, initUploadTask } from '@/api/file';
 import toast from '@/utils/toast';
 import usePathStore from '@/stores/pathStore';
 
+// 不超过该大小的文件在浏览器端计算完整 SHA-256，用于秒传
+const CONTENT_HASH_MAX_SIZE = 100 * 1024 * 1024;
+
+const toHex = (bytes) => Array.from(bytes, b => b.toString(16).padStart(2, '0')).join('');
+
+// 计算 SHA-256（需要安全上下文），不可用时返回 undefined
+const sha256 = async (data) => {
+  if (!globalThis.crypto?.subtle) return undefined;
+  try {
+    return new Uint8Array(await crypto.subtle.digest('SHA-256', data));
+  } catch {
+    return undefined;
+  }
+};
+
+// 计算文件完整 SHA-256，用于秒传
+const calculateContentHash = async (file) => {
+  if (file.size > CONTENT_HASH_MAX_SIZE) return undefined;
+  const digest = await sha256(await file.arrayBuffer());
+  return digest && toHex(digest);
+};
+
+// 按服务端相同规则由分片摘要计算 Merkle 根：父节点 = SHA-256(左 || 右)，奇数节点直接提升
+// 修改规则时需同步服务端 MerkleTreeUtil，并以 MerkleTreeUtilTest 中的测试向量核对
+const calculateMerkleRoot = async (leaves) => {
+  let level = leaves;
+  while (level.length > 1) {
+    const parents = [];
+    for (let i = 0; i < level.length; i += 2) {
+      if (i + 1 === level.length) {
+        parents.push(level[i]);
+      } else {
+        const pair = new Uint8Array(level[i].length + level[i + 1].length);
+        pair.set(level[i]);
+        pair.set(level[i + 1], level[i].length);
+        parents.push(await sha256(pair));
+      }
+    }
+    level = parents;
+  }
+  return toHex(level[0]);
+};
+
+// 小文件在短时间窗口内合并为一次批量请求上传，避免逐个文件的请求开销
+const BATCH_FILE_MAX_SIZE = 1024 * 1024;
+const BATCH_MAX_ITEMS = 20;
+const BATCH_MAX_BYTES = 20 * 1024 * 1024; // 低于服务端 max-request-size
+const BATCH_WAIT = 50;
+
+let pendingBatch = null;
+
+const flushBatch = async () => {
+  const batch = pendingBatch;
+  pendingBatch = null;
+  if (!batch) return;
+  clearTimeout(batch.timer);
+  try {
+    const response = await withThrottleRetry(() => uploadBatch(
+      batch.entries.map(({ part, file, path }) => ({ part, fileName: file.name, path })),
+      batch.entries
+    ));
+    const results = new Map(response.data.map(result => [result.part, result]));
+    batch.entries.forEach(({ part, resolve, reject }) => {
+      const result = results.get(part);
+      if (result?.code === 200) resolve(result.fileId);
+      else reject(new Error(result?.msg || '上传失败'));
+    });
+  } catch (error) {
+    batch.entries.forEach(({ reject }) => reject(error));
+  }
+};
+
+const enqueueSmallFile = (file, path) => new Promise((resolve, reject) => {
+  if (pendingBatch && (pendingBatch.entries.length >= BATCH_MAX_ITEMS
+    || pendingBatch.bytes + file.size > BATCH_MAX_BYTES)) {
+    flushBatch();
+  }
+  if (!pendingBatch) {
+    pendingBatch = { entries: [], bytes: 0, timer: setTimeout(flushBatch, BATCH_WAIT) };
+  }
+  pendingBatch.entries.push({ part: `f${pendingBatch.entries.length}`, file, path, resolve, reject });
+  pendingBatch.bytes += file.size;
+});
 
 export const uploadFileInChunks = async (file, options = {}) => {
   const {
-    chunkSize = 5 * 1024 * 1024, // 默认5MB一片
+    sampleSize = 5 * 1024 * 1024, // 快速哈希取首尾各5MB
     onProgress = () => { }, // 进度回调
     onSuccess = () => { }, // 成功回调
     onError = () => { } // 错误回调
@@ -15,22 +98,41 @@ export const uploadFileInChunks = async (file, options = {}) => {
 
   const pathStore = usePathStore();
 
+  if (file.size > 0 && file.size <= BATCH_FILE_MAX_SIZE) {
+    try {
+      const fileId = await enqueueSmallFile(file, pathStore.getBreadcrumbPath());
+      onProgress({ progress: 100, processedBytes: file.size });
+      onSuccess(fileId);
+    } catch (error) {
+      onError(error);
+    }
+    return;
+  }
+
   try {
     // 1. 计算文件哈希（作为文件唯一标识）
-    const quickHash = await calculateFileHash([file.slice(0, chunkSize), file.slice(file.size - chunkSize, file.size)]);
+    const quickHash = await calculateFileHash([file.slice(0, sampleSize), file.slice(file.size - sampleSize, file.size)]);
+    const contentHash = await calculateContentHash(file);
 
-    // 2. 检查是否有未完成的上传任务
-    const uploadTask = await checkUploadTask(quickHash);
+    // 2. 创建或恢复上传会话（服务端决定分片大小与并发数，并返回已接收的分片）
+    const uploadTask = await initUploadTask(quickHash, {
+      fileName: file.name,
+      size: file.size,
+      contentHash,
+      path: pathStore.getBreadcrumbPath()
+    });
     // 3. 如果服务器已有完整文件，直接返回成功（秒传）
-    if (uploadTask.completed) {
+    if (uploadTask.data?.completed) {
       toast.success('秒传成功', '文件已存在，无需重复上传');
-      onSuccess(uploadTask.url);
+      onSuccess(uploadTask.data.fileId);
       return;
     }
+    const { sessionId, chunkSize, totalChunks: chunksCount, concurrency } = uploadTask.data;
+    // 服务端建议压缩的文本类文件，浏览器支持时按分片压缩上传
+    const encoding = typeof CompressionStream !== 'undefined' ? uploadTask.data.encoding : null;
 
     // 4. 分割文件
     const chunks = [];
-    const chunksCount = Math.ceil(file.size / chunkSize);
 
     for (let i = 0; i < chunksCount; i++) {
       const start = i * chunkSize;
@@ -38,6 +140,7 @@ export const uploadFileInChunks = async (file, options = {}) => {
       const chunk = file.slice(start, end);
       chunks.push({
         index: i,
+        offset: start,
         chunk,
         size: chunk.size,
         uploaded: uploadTask.data?.uploadedChunks?.includes(i) || false // 已上传的分片
@@ -46,6 +149,7 @@ export const uploadFileInChunks = async (file, options = {}) => {
 
     // 5. 上传所有未上传的分片
     const uploadedChunks = [];
+    const chunkDigests = new Array(chunksCount);
     let completedSize = 0;
 
     // 已上传的分片直接计入进度
@@ -57,8 +161,7 @@ export const uploadFileInChunks = async (file, options = {}) => {
       }
     });
 
-    // 并发上传分片，这里限制5个并发
-    const concurrency = 5;
+    // 按服务端建议的并发数上传分片
     const pool = []; // 并发池
 
     for (const chunk of chunks) {
@@ -71,7 +174,7 @@ export const uploadFileInChunks = async (file, options = {}) => {
       }
 
       // 上传分片
-      const uploadPromise = uploadChunk(file.name, chunk, chunk.index, chunksCount, (progress) => {
+      const uploadPromise = uploadChunk(sessionId, chunk, chunk.index, chunkDigests, encoding, (progress) => {
         completedSize += chunk.size;
         onProgress({
           progress: Math.floor((completedSize / file.size) * 100),
@@ -94,24 +197,72 @@ export const uploadFileInChunks = async (file, options = {}) => {
     // 等待所有分片上传完成
     await Promise.all(pool);
 
-    // 6. 通知服务器所有分片已上传完成，合并文件
-    const mergeResult = await mergeFileChunks(file.name, file.size, chunksCount, pathStore.getBreadcrumbPath());
+    // 6. 补齐已跳过分片的摘要后计算 Merkle 根，通知服务器合并文件
+    for (const chunk of chunks) {
+      if (!chunkDigests[chunk.index]) {
+        chunkDigests[chunk.index] = await sha256(await chunk.chunk.arrayBuffer());
+      }
+    }
+    const merkleRoot = chunkDigests.every(Boolean) ? await calculateMerkleRoot(chunkDigests) : undefined;
+    const mergeTask = await withThrottleRetry(() => mergeFileChunks(sessionId, pathStore.getBreadcrumbPath(), merkleRoot));
+    const mergeResult = await waitForMerge(mergeTask.data.id);
     toast.success('上传成功', '文件已上传到服务器');
-    onSuccess(mergeResult.url);
+    onSuccess(mergeResult.fileId);
   } catch (error) {
     onError(error);
   }
 };
 
+const MERGE_POLL_INTERVAL = 1000;
+
+// 轮询合并任务直至完成，失败时抛出服务端返回的错误信息
+const waitForMerge = async (jobId) => {
+  for (;;) {
+    const { data: job } = await getMergeStatus(jobId);
+    if (job.phase === 'DONE') return job;
+    if (job.phase === 'FAILED') throw new Error(job.errorMsg || '文件合并失败');
+    await new Promise(resolve => setTimeout(resolve, MERGE_POLL_INTERVAL));
+  }
+};
+
 // 上传单个分片
-const uploadChunk = async (filename, chunk, index, totalChunks, onProgress) => {
+const MAX_THROTTLE_RETRIES = 5;
+
+const sleep = (ms) => new Promise(resolve => setTimeout(resolve, ms));
+
+// 服务端返回 429 时按 Retry-After 等待后重试
+const withThrottleRetry = async (fn) => {
+  for (let attempt = 0; ; attempt++) {
+    try {
+      return await fn();
+    } catch (error) {
+      if (error.response?.status !== 429 || attempt >= MAX_THROTTLE_RETRIES) throw error;
+      const retryAfter = Number(error.response.headers?.['retry-after']) || 1;
+      await sleep(retryAfter * 1000);
+    }
+  }
+};
+
+// 以流方式压缩分片，不在内存中额外展开整个分片
+const compressChunk = (blob, encoding) =>
+  new Response(blob.stream().pipeThrough(new CompressionStream(encoding))).blob();
+
+const uploadChunk = async (sessionId, chunk, index, chunkDigests, encoding, onProgress) => {
   try {
-    const response = await uploadFile(filename, chunk, index, totalChunks, {
+    // 分片摘要随分片一起上传，服务端校验不一致时只需重传该分片；摘要按原始数据计算
+    const digest = await sha256(await chunk.chunk.arrayBuffer());
+    chunkDigests[index] = digest;
+    const body = encoding ? await compressChunk(chunk.chunk, encoding) : null;
+    const response = await withThrottleRetry(() => uploadFileRaw(sessionId, chunk, index, chunk.offset, {
+      chunkHash: digest && toHex(digest),
+      encoding,
+      body,
       onUploadProgress: (progressEvent) => {
-        const percentCompleted = Math.round((progressEvent.loaded * 100) / chunk.size);
+        const total = progressEvent.total || (body ? body.size : chunk.size);
+        const percentCompleted = Math.round((progressEvent.loaded * 100) / total);
         onProgress(percentCompleted);
       }
-    });
+    }));
     return response.data;
   } catch (error) {
     throw new Error(`分片${index}上传失败: ${error.message}`);
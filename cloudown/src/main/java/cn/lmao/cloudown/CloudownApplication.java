@@ -2,8 +2,10 @@ package cn.lmao.cloudown;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CloudownApplication {
 
 	public static void main(String[] args) {
@@ -1,20 +1,80 @@
 package cn.lmao.cloudown.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
 public class AsyncConfig {
-    
-    @Bean(name = "fileUploadTaskExecutor")
-    public ThreadPoolTaskExecutor fileUploadTaskExecutor() {
+
+    // 合并为磁盘密集型任务, 并发数宜与磁盘能力匹配而非CPU核数
+    @Value("${file.merge.workers:2}")
+    private int mergeWorkers;
+
+    @Value("${file.merge.queue-capacity:50}")
+    private int mergeQueueCapacity;
+
+    @Bean(name = "fileMergeTaskExecutor")
+    public ThreadPoolTaskExecutor fileMergeTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         // 根据服务器配置调整这些参数
-        executor.setCorePoolSize(5);          // 核心线程数
-        executor.setMaxPoolSize(10);           // 最大线程数
-        executor.setQueueCapacity(100);        // 队列容量
-        executor.setThreadNamePrefix("FileUpload-"); // 线程名前缀
+        executor.setCorePoolSize(mergeWorkers);          // 核心线程数
+        executor.setMaxPoolSize(mergeWorkers);           // 最大线程数
+        executor.setQueueCapacity(mergeQueueCapacity);   // 队列容量
+        executor.setThreadNamePrefix("FileMerge-");      // 线程名前缀
+        // 队列满时直接拒绝(默认AbortPolicy), 由调用方返回繁忙提示, 不占用请求线程执行合并
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    // 并行合并的写入线程数, 所有并行合并共享
+    @Value("${file.merge.parallel.threads:4}")
+    private int mergeIoThreads;
+
+    @Bean(name = "fileMergeIoExecutor")
+    public ThreadPoolTaskExecutor fileMergeIoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(mergeIoThreads);
+        executor.setMaxPoolSize(mergeIoThreads);
+        // 每个分片一个任务, 队列需容纳单个大文件的全部分片
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("MergeIO-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 打包下载时预读后续小文件, 与当前条目的压缩写出重叠
+    @Value("${file.zip.prefetch-threads:2}")
+    private int zipPrefetchThreads;
+
+    @Bean(name = "fileZipPrefetchExecutor")
+    public ThreadPoolTaskExecutor fileZipPrefetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(zipPrefetchThreads);
+        executor.setMaxPoolSize(zipPrefetchThreads);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("ZipPrefetch-");
+        // 队列满时由请求线程自行读取
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "fileHashTaskExecutor")
+    public ThreadPoolTaskExecutor fileHashTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        // 后台哈希回填属于低优先级任务, 线程数保持较小
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("FileHash-");
+        // 队列满时由提交线程执行, 天然形成背压
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         executor.initialize();
         return executor;
     }
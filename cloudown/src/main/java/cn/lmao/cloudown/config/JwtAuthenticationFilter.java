@@ -38,7 +38,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     public static final String[] PUBLIC_URLS = {
             "/api/auth/**",
             "/avatar/**",
-            "/thumb/**"
+            "/thumb/**",
+            // 签名下载链接, 由 DownloadController 校验签名
+            "/dl/**"
     };
 
     public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
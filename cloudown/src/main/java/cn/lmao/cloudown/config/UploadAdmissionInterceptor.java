@@ -0,0 +1,245 @@
+package cn.lmao.cloudown.config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+
+import cn.lmao.cloudown.model.dto.ApiResponse;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.util.FileUtil;
+import cn.lmao.cloudown.util.JsonUtil;
+import cn.lmao.cloudown.util.LogUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 上传/合并请求准入控制
+ * 1. 磁盘写延迟超过阈值时直接拒绝(降载)
+ * 2. 每用户同时处理的请求数上限
+ * 3. 全局上传字节令牌桶
+ * 许可不足时短暂排队等待, 超时仍不足则返回 429 及 Retry-After
+ * 原始流上传在请求体读取前被拒绝, 可真正向客户端施加背压; multipart 请求在此之前已被解析落盘
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = UploadAdmissionInterceptor.class.getName() + ".permit";
+    private static final String CHUNK_LENGTH_HEADER = "X-Chunk-Length";
+    private static final int PROBE_SIZE = 4096;
+    // 磁盘延迟平滑系数
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final FileUtil fileUtil;
+    private final MeterRegistry meterRegistry;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.admission.enabled:true}")
+    private boolean admissionEnabled;
+
+    // 每用户同时处理的上传/合并请求数
+    @Value("${file.admission.per-user-concurrency:6}")
+    private int perUserConcurrency;
+
+    // 全局上传带宽(每秒), 0 表示不限制
+    @Value("${file.admission.bandwidth:0}")
+    private DataSize bandwidth;
+
+    // 许可不足时的最长排队时间
+    @Value("${file.admission.queue-timeout:200ms}")
+    private Duration queueTimeout;
+
+    // 磁盘写延迟(同步写入探测文件)超过该值时拒绝新的上传
+    @Value("${file.admission.disk-latency-threshold:500ms}")
+    private Duration diskLatencyThreshold;
+
+    private RateLimiter bandwidthLimiter;
+    // 令牌单位为KB, 避免大分片超出 int 范围
+    private double kilobytesPerSecond;
+    private volatile double diskLatencyMillis;
+    private final AtomicInteger inflight = new AtomicInteger();
+    // 弱引用值: 已准入的请求经请求属性持有信号量, 持有许可期间条目不会被回收;
+    // 不按时间过期, 否则长时间上传期间条目失效后新请求会拿到许可全满的新信号量
+    private final Cache<String, Semaphore> userPermits = CacheBuilder.newBuilder()
+            .weakValues()
+            .build();
+
+    private Counter admittedCounter;
+    private Counter queuedCounter;
+    private Counter rejectedUserCounter;
+    private Counter rejectedBandwidthCounter;
+    private Counter rejectedDiskCounter;
+
+    @PostConstruct
+    public void init() {
+        if (bandwidth.toBytes() > 0) {
+            kilobytesPerSecond = Math.max(1, bandwidth.toKilobytes());
+            bandwidthLimiter = RateLimiter.create(kilobytesPerSecond);
+        }
+        admittedCounter = requestCounter("admitted", "none");
+        queuedCounter = requestCounter("queued", "none");
+        rejectedUserCounter = requestCounter("rejected", "user");
+        rejectedBandwidthCounter = requestCounter("rejected", "bandwidth");
+        rejectedDiskCounter = requestCounter("rejected", "disk");
+        Gauge.builder("cloudown.admission.inflight", inflight, AtomicInteger::get)
+                .description("已准入且未结束的上传/合并请求数")
+                .register(meterRegistry);
+        Gauge.builder("cloudown.admission.disk.latency", this, i -> i.diskLatencyMillis)
+                .description("磁盘同步写延迟(毫秒, 指数加权平均)")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        log.info("上传准入控制: enabled={}, 每用户并发={}, 带宽={}, 磁盘延迟阈值={}ms", admissionEnabled,
+                perUserConcurrency, bandwidth, diskLatencyThreshold.toMillis());
+    }
+
+    private Counter requestCounter(String outcome, String reason) {
+        return Counter.builder("cloudown.admission.requests")
+                .description("上传/合并请求准入结果")
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler) throws Exception {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!admissionEnabled || authentication == null) {
+            return true;
+        }
+
+        // 1. 磁盘降载: 延迟越高建议的重试间隔越长
+        double threshold = diskLatencyThreshold.toMillis();
+        if (diskLatencyMillis > threshold) {
+            rejectedDiskCounter.increment();
+            long retryAfter = Math.min(30, Math.max(1, Math.round(diskLatencyMillis / threshold)));
+            return reject(request, response, retryAfter, "磁盘延迟过高: " + Math.round(diskLatencyMillis) + "ms");
+        }
+
+        // 2. 每用户并发
+        boolean queued = false;
+        Semaphore permits = userPermits.get(authentication.getName(), () -> new Semaphore(perUserConcurrency));
+        if (!permits.tryAcquire()) {
+            queued = true;
+            if (!permits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejectedUserCounter.increment();
+                return reject(request, response, 1, "用户并发请求过多: " + authentication.getName());
+            }
+        }
+
+        // 3. 全局带宽令牌桶
+        long bytes = requestBytes(request);
+        if (bandwidthLimiter != null && bytes > 0) {
+            int kilobytes = (int) Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024);
+            if (!bandwidthLimiter.tryAcquire(kilobytes)) {
+                queued = true;
+                if (!bandwidthLimiter.tryAcquire(kilobytes, queueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    permits.release();
+                    rejectedBandwidthCounter.increment();
+                    long retryAfter = Math.max(1, (long) Math.ceil(kilobytes / kilobytesPerSecond));
+                    return reject(request, response, retryAfter, "上传带宽已满");
+                }
+            }
+        }
+
+        if (queued) {
+            queuedCounter.increment();
+        }
+        admittedCounter.increment();
+        inflight.incrementAndGet();
+        request.setAttribute(PERMIT_ATTRIBUTE, permits);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler, Exception ex) {
+        Object permits = request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permits instanceof Semaphore semaphore) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            semaphore.release();
+            inflight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 周期性同步写入探测文件, 以写延迟的指数加权平均衡量磁盘压力
+     */
+    @Scheduled(fixedDelayString = "${file.admission.disk-probe-interval:1000}")
+    public void probeDiskLatency() {
+        if (!admissionEnabled) {
+            return;
+        }
+        try {
+            Path tempRoot = fileUtil.getTempRoot();
+            Files.createDirectories(tempRoot);
+            Path probe = tempRoot.resolve(".latency_probe");
+            long start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(probe, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            double sample = (System.nanoTime() - start) / 1_000_000.0;
+            diskLatencyMillis = diskLatencyMillis == 0 ? sample
+                    : diskLatencyMillis + EWMA_ALPHA * (sample - diskLatencyMillis);
+        } catch (IOException e) {
+            log.warn("磁盘延迟探测失败: {}", e.getMessage());
+        }
+    }
+
+    private long requestBytes(HttpServletRequest request) {
+        long length = request.getContentLengthLong();
+        if (length > 0) {
+            return length;
+        }
+        String declared = request.getHeader(CHUNK_LENGTH_HEADER);
+        try {
+            return declared == null ? 0 : Long.parseLong(declared);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private boolean reject(HttpServletRequest request, HttpServletResponse response, long retryAfterSeconds,
+            String reason) throws IOException {
+        log.warn("拒绝上传请求: {} {}, 原因: {}, {}秒后重试", request.getMethod(), request.getRequestURI(), reason,
+                retryAfterSeconds);
+        response.setContentType("application/json;charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.getWriter().write(JsonUtil.toJson(ApiResponse.exception(ErrorOperationStatus.UPLOAD_THROTTLED)));
+        return false;
+    }
+}
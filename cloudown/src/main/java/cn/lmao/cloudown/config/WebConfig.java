@@ -1,19 +1,28 @@
 package cn.lmao.cloudown.config;
 
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
 
 import org.slf4j.Logger;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
     private final Logger log = LogUtil.getLogger();
 
+    private final UploadAdmissionInterceptor uploadAdmissionInterceptor;
+
     @Value("${file.upload.path}")
     private String uploadPath;
 
@@ -22,15 +31,29 @@ public class WebConfig implements WebMvcConfigurer {
         log.info("配置资源处理器，头像路径: {}", uploadPath + "/avatar/");
         log.info("配置资源处理器，缩略图路径: {}", uploadPath + "/thumb/");
 
+        // 头像与缩略图文件名含随机UUID, 生成后内容不再改变: 以文件名作强 ETag, 并允许长期缓存
+        // Last-Modified / If-Modified-Since 由资源处理器按文件修改时间处理
+        CacheControl immutable = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
         // 将本地路径映射到 "/upload/**" URL
         registry.addResourceHandler("/avatar/**")
                 .addResourceLocations("file:" + uploadPath + "/avatar/")
-                .setCachePeriod(3600); // 设置缓存时间为1小时
+                .setCacheControl(immutable)
+                .setEtagGenerator(Resource::getFilename);
 
         // 将本地路径映射到 "/upload/**" URL
         registry.addResourceHandler("/thumb/**")
                 .addResourceLocations("file:" + uploadPath + "/thumb/")
-                .setCachePeriod(3600); // 设置缓存时间为1小时
+                .setCacheControl(immutable)
+                .setEtagGenerator(Resource::getFilename);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 分片上传与合并请求的准入控制
+        registry.addInterceptor(uploadAdmissionInterceptor)
+                .addPathPatterns("/api/file/upload", "/api/file/upload/raw", "/api/file/upload/batch",
+                        "/api/file/merge");
     }
 
 }
\ No newline at end of file
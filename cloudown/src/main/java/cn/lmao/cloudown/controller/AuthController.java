@@ -48,6 +48,7 @@ public class AuthController {
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = jwtUtil.generateToken(email);
+            userService.recordLogin(email);
 
             // 记录安全审计日志
             LogUtil.audit("USER_LOGIN", Map.of("email", email, "success", true));
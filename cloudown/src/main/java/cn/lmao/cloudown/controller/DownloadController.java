@@ -0,0 +1,94 @@
+package cn.lmao.cloudown.controller;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.dto.ApiResponse;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.model.enums.UserRole;
+import cn.lmao.cloudown.service.DownloadService;
+import cn.lmao.cloudown.service.SignedUrlService;
+import cn.lmao.cloudown.util.JsonUtil;
+import cn.lmao.cloudown.util.LogUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 签名链接下载
+ * 不经过 JWT 认证, 仅校验链接签名与有效期, 可直接用于 video/img 标签及放在缓存代理之后
+ */
+@RestController
+@RequiredArgsConstructor
+public class DownloadController {
+
+    private final SignedUrlService signedUrlService;
+    private final DownloadService downloadService;
+    private final Logger log = LogUtil.getLogger();
+
+    /**
+     * @param fileId   文件ID
+     * @param fileName 文件名, 仅用于浏览器显示, 不参与签名
+     * @param userId   签发链接的用户ID
+     * @param role     签发时的用户角色, 决定限速档位
+     * @param expires  过期时间(epoch 秒)
+     * @param sign     签名
+     * @param inline   是否以 inline 方式返回(在线播放)
+     */
+    @GetMapping("/dl/{fileId}/{fileName}")
+    public void download(
+            @PathVariable Long fileId,
+            @PathVariable String fileName,
+            @RequestParam("u") Long userId,
+            @RequestParam("r") String role,
+            @RequestParam("e") long expires,
+            @RequestParam("s") String sign,
+            @RequestParam(value = "inline", defaultValue = "false") boolean inline,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        log.debug("签名链接下载: fileId={}, userId={}, range={}", fileId, userId, request.getHeader(HttpHeaders.RANGE));
+        try {
+            UserRole userRole = UserRole.of(role);
+            File file = signedUrlService.resolve(fileId, userId, userRole, expires, sign);
+
+            // 链接本身即访问凭证, 允许共享缓存在链接有效期内缓存
+            long maxAge = Math.max(0, expires - System.currentTimeMillis() / 1000);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAge);
+            downloadService.writeFile(request, response, userId, userRole, file, file.getName(), inline);
+        } catch (CustomException e) {
+            log.warn("签名链接无效: fileId={}, userId={}, reason={}", fileId, userId, e.getMsg());
+            int status = e.getCode() == ErrorOperationStatus.FILE_NOT_FOUND.getCode()
+                    ? HttpServletResponse.SC_NOT_FOUND
+                    : HttpServletResponse.SC_FORBIDDEN;
+            reject(response, status, e);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                log.debug("下载中断: fileId={}, error={}", fileId, e.getMessage());
+                return;
+            }
+            log.error("签名链接下载失败: fileId={}, error={}", fileId, e.getMessage(), e);
+            reject(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    new CustomException(ErrorOperationStatus.FILE_DOWNLOAD_FAIL));
+        }
+    }
+
+    /**
+     * 以真实的 HTTP 状态码返回错误, 避免缓存代理把错误响应当作文件缓存
+     */
+    private void reject(HttpServletResponse response, int status, CustomException e) throws IOException {
+        response.resetBuffer();
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setContentType("application/json;charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(JsonUtil.toJson(ApiResponse.exception(e)));
+    }
+}
@@ -1,16 +1,18 @@
 package cn.lmao.cloudown.controller;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
-import org.springframework.core.io.Resource;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -19,13 +21,33 @@ import org.springframework.web.multipart.MultipartFile;
 
 import cn.lmao.cloudown.excepiton.CustomException;
 import cn.lmao.cloudown.model.dto.ApiResponse;
+import cn.lmao.cloudown.model.dto.BatchUploadItem;
+import cn.lmao.cloudown.model.dto.BatchUploadResult;
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.dto.FilePage;
+import cn.lmao.cloudown.model.dto.MergeJob;
+import cn.lmao.cloudown.model.dto.SignedUrl;
+import cn.lmao.cloudown.model.dto.UploadPlan;
 import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.UploadSession;
 import cn.lmao.cloudown.model.entity.User;
 import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.model.enums.UserRole;
+import cn.lmao.cloudown.service.ArchiveService;
+import cn.lmao.cloudown.service.DownloadService;
 import cn.lmao.cloudown.service.FileService;
+import cn.lmao.cloudown.service.MergeJobService;
+import cn.lmao.cloudown.service.SignedUrlService;
+import cn.lmao.cloudown.service.UploadSessionService;
+import cn.lmao.cloudown.service.UploadTuningService;
 import cn.lmao.cloudown.service.UserService;
+import cn.lmao.cloudown.util.FileTypeChecker;
+import cn.lmao.cloudown.util.JsonUtil;
 import cn.lmao.cloudown.util.LogUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
 import io.micrometer.common.util.StringUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -35,6 +57,12 @@ public class FileController {
 
     private final UserService userService;
     private final FileService fileService;
+    private final UploadSessionService uploadSessionService;
+    private final MergeJobService mergeJobService;
+    private final UploadTuningService uploadTuningService;
+    private final DownloadService downloadService;
+    private final ArchiveService archiveService;
+    private final SignedUrlService signedUrlService;
     private final Logger log = LogUtil.getLogger();
 
     /**
@@ -45,7 +73,7 @@ public class FileController {
      * @return 文件列表
      */
     @GetMapping("/list")
-    public ApiResponse<List<File>> list(
+    public ApiResponse<List<FileItem>> list(
             @RequestParam(value = "path", defaultValue = "my-files/") String path,
             @RequestParam(value = "category", defaultValue = "my-files") String category,
             @RequestParam(value = "sort", defaultValue = "time-desc") String sort) {
@@ -56,7 +84,7 @@ public class FileController {
             if (StringUtils.isBlank(path)) {
                 return ApiResponse.exception(ErrorOperationStatus.INVALID_PATH);
             }
-            List<File> files = fileService.getFileList(user, path, category, sort);
+            List<FileItem> files = fileService.getFileList(user, path, category, sort);
             log.info("文件列表获取成功: path={}, fileCount={}, email={}", path, files.size(), user.getEmail());
             return ApiResponse.success(files);
         } catch (CustomException e) {
@@ -72,28 +100,185 @@ public class FileController {
         }
     }
 
+    /**
+     * 游标分页获取文件列表, 每页为一次有界的索引扫描
+     *
+     * @param cursor 上一页返回的 nextCursor, 首页不传
+     * @param size   每页条数
+     * @return 本页文件及下一页游标(没有更多时为 null)
+     */
+    @GetMapping("/list/page")
+    public ApiResponse<FilePage<FileItem>> listPage(
+            @RequestParam(value = "path", defaultValue = "my-files/") String path,
+            @RequestParam(value = "category", defaultValue = "my-files") String category,
+            @RequestParam(value = "sort", defaultValue = "time-desc") String sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
+        User user = getUserFromToken();
+        log.info("用户: {} 分页获取文件列表: path={}, category={}, sort={}, size={}",
+                user.getNickname(), path, category, sort, size);
+        try {
+            if (StringUtils.isBlank(path)) {
+                return ApiResponse.exception(ErrorOperationStatus.INVALID_PATH);
+            }
+            return ApiResponse.success(fileService.getFilePage(user, path, category, sort, cursor, size));
+        } catch (CustomException e) {
+            log.warn("分页获取文件列表参数错误: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("分页获取文件列表参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("分页获取文件列表失败: path={}, email={}, error={}",
+                    path, user.getEmail(), e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.SYSTEM_ERROR);
+        }
+    }
+
+    /**
+     * 检查上传任务: 创建或恢复 (用户, quickHash) 对应的上传会话
+     *
+     * @param quickHash   文件快速哈希（首尾分片）
+     * @param fileName    文件名
+     * @param size        文件大小
+     * @param chunkSize   分片大小
+     * @param totalChunks 分片总数
+     * @param contentHash 文件完整 SHA-256（可选, 用于秒传）
+     * @param path        目标目录（秒传时使用）
+     * @return 会话ID及已上传的分片索引, 秒传成功时 completed=1
+     */
     @GetMapping("/check-upload")
-    public ApiResponse<Map<String, Object>> checkUpload(@RequestParam(value = "quickHash") String quickHash) {
-        // 1. 创建Map对象（推荐使用HashMap）
-        Map<String, Object> map = new HashMap<>();
-        map.put("completed", 0);
-        map.put("uploadedChunks", new int[0]);
-        return ApiResponse.success(map);
+    public ApiResponse<Map<String, Object>> checkUpload(
+            @RequestParam(value = "quickHash") String quickHash,
+            @RequestParam(value = "fileName") String fileName,
+            @RequestParam(value = "size") Long size,
+            @RequestParam(value = "chunkSize") Long chunkSize,
+            @RequestParam(value = "totalChunks") int totalChunks,
+            @RequestParam(value = "contentHash", required = false) String contentHash,
+            @RequestParam(value = "path", defaultValue = "my-files/") String path) {
+        User user = getUserFromToken();
+        log.info("用户: {} 检查上传任务: fileName={}, size={}, quickHash={}",
+                user.getNickname(), fileName, size, quickHash);
+        try {
+            if (StringUtils.isBlank(fileName)) {
+                return ApiResponse.exception(ErrorOperationStatus.INVALID_FILENAME);
+            }
+            Map<String, Object> map = new HashMap<>();
+
+            // 内容哈希已存在时直接秒传, 无需上传任何分片
+            if (StringUtils.isNotBlank(contentHash)) {
+                File linked = fileService.instantUpload(user, contentHash, size, fileName, path);
+                if (linked != null) {
+                    map.put("completed", 1);
+                    map.put("fileId", linked.getId());
+                    return ApiResponse.success(map);
+                }
+            }
+
+            UploadSession session = uploadSessionService.openSession(user, quickHash,
+                    org.springframework.util.StringUtils.cleanPath(fileName), size, chunkSize, totalChunks);
+
+            map.put("completed", 0);
+            map.put("sessionId", session.getId());
+            map.put("uploadedChunks", uploadSessionService.getReceivedChunks(session));
+            return ApiResponse.success(map);
+        } catch (CustomException e) {
+            log.warn("检查上传任务失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("检查上传任务参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("检查上传任务失败: fileName={}, error={}", fileName, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.FILE_UPLOAD_FAILED);
+        }
+    }
+
+    /**
+     * 协商上传参数: 由服务端根据文件大小、当前负载和用户历史吞吐量决定分片大小与建议并发数
+     * 同一文件存在未完成的会话时沿用该会话的分片大小续传
+     *
+     * @param quickHash   文件快速哈希
+     * @param fileName    文件名
+     * @param size        文件大小
+     * @param contentHash 文件完整 SHA-256（可选, 用于秒传）
+     * @param path        目标目录（秒传时使用）
+     * @param transport   分片上传方式: raw 或 multipart, multipart 分片受请求大小上限约束
+     * @return 会话ID、已上传的分片索引及协商后的 chunkSize/totalChunks/concurrency, 秒传成功时 completed=1
+     */
+    @PostMapping("/upload-init")
+    public ApiResponse<Map<String, Object>> initUpload(
+            @RequestParam(value = "quickHash") String quickHash,
+            @RequestParam(value = "fileName") String fileName,
+            @RequestParam(value = "size") Long size,
+            @RequestParam(value = "contentHash", required = false) String contentHash,
+            @RequestParam(value = "path", defaultValue = "my-files/") String path,
+            @RequestParam(value = "transport", defaultValue = "raw") String transport) {
+        User user = getUserFromToken();
+        log.info("用户: {} 协商上传参数: fileName={}, size={}, quickHash={}",
+                user.getNickname(), fileName, size, quickHash);
+        try {
+            if (StringUtils.isBlank(fileName)) {
+                return ApiResponse.exception(ErrorOperationStatus.INVALID_FILENAME);
+            }
+            if (size == null || size <= 0) {
+                return ApiResponse.exception(ErrorOperationStatus.FILE_EMPTY);
+            }
+            Map<String, Object> map = new HashMap<>();
+
+            if (StringUtils.isNotBlank(contentHash)) {
+                File linked = fileService.instantUpload(user, contentHash, size, fileName, path);
+                if (linked != null) {
+                    map.put("completed", 1);
+                    map.put("fileId", linked.getId());
+                    return ApiResponse.success(map);
+                }
+            }
+
+            String cleanName = org.springframework.util.StringUtils.cleanPath(fileName);
+            UploadPlan plan = uploadTuningService.plan(user.getId(), size, "multipart".equalsIgnoreCase(transport));
+            UploadSession session = uploadSessionService.findResumableSession(user.getId(), quickHash, cleanName, size);
+            if (session == null) {
+                session = uploadSessionService.openSession(user, quickHash, cleanName, size, plan.getChunkSize(),
+                        plan.getTotalChunks());
+            }
+
+            map.put("completed", 0);
+            map.put("sessionId", session.getId());
+            map.put("uploadedChunks", uploadSessionService.getReceivedChunks(session));
+            map.put("chunkSize", session.getChunkSize());
+            map.put("totalChunks", session.getTotalChunks());
+            map.put("concurrency", Math.min(plan.getConcurrency(), session.getTotalChunks()));
+            // 文本类文件建议客户端以 gzip 压缩分片后上传
+            map.put("encoding", FileTypeChecker.isCompressible(cleanName) ? "gzip" : null);
+            return ApiResponse.success(map);
+        } catch (CustomException e) {
+            log.warn("协商上传参数失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("协商上传参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("协商上传参数失败: fileName={}, error={}", fileName, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.FILE_UPLOAD_FAILED);
+        }
     }
 
     @PostMapping("/upload")
     public ApiResponse<String> upload(
             @RequestHeader("Authorization") String token,
-            @RequestParam("filename") String filename,
+            @RequestParam("sessionId") String sessionId,
             @RequestParam("file") MultipartFile file,
             @RequestParam("index") int chunkIndex,
-            @RequestParam("totalChunks") int totalChunks) {
+            @RequestParam(value = "chunkHash", required = false) String chunkHash,
+            @RequestParam(value = "encoding", required = false) String encoding,
+            @RequestParam(value = "size", required = false) Long size) {
         long startTime = System.currentTimeMillis();
         String threadName = Thread.currentThread().getName();
         try {
             // 参数验证
-            if (StringUtils.isBlank(filename)) {
-                return ApiResponse.exception(ErrorOperationStatus.INVALID_FILENAME);
+            if (StringUtils.isBlank(sessionId)) {
+                return ApiResponse.exception(ErrorOperationStatus.UPLOAD_SESSION_NOT_FOUND);
             }
 
             if (file.getSize() <= 0) {
@@ -101,59 +286,180 @@ public class FileController {
             }
 
             User user = getUserFromToken();
-            log.info("用户: {} 开始上传文件分片: {} [{}/{}] (线程: {})",
-                    user.getNickname(), filename, chunkIndex + 1, totalChunks, threadName);
+            log.info("用户: {} 开始上传文件分片: session={} [{}] (线程: {})",
+                    user.getNickname(), sessionId, chunkIndex + 1, threadName);
 
-            fileService.uploadFile(user, filename, file, chunkIndex, totalChunks);
+            fileService.uploadFile(user, sessionId, file, chunkIndex, chunkHash, encoding, size);
 
             long duration = System.currentTimeMillis() - startTime;
-            log.info("用户: {} 上传分片成功: {} [{}/{}] 耗时: {}ms (线程: {})",
-                    user.getNickname(), filename, chunkIndex + 1, totalChunks, duration, threadName);
+            log.info("用户: {} 上传分片成功: session={} [{}] 耗时: {}ms (线程: {})",
+                    user.getNickname(), sessionId, chunkIndex + 1, duration, threadName);
 
             return ApiResponse.success("分片上传成功");
+        } catch (CustomException e) {
+            log.warn("上传文件分片失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
         } catch (IllegalArgumentException e) {
             log.warn("参数错误: {}", e.getMessage());
             return ApiResponse.error(400, e.getMessage());
         } catch (Exception e) {
-            log.error("上传文件分片失败: filename={}, chunk={}/{}, error={}",
-                    filename, chunkIndex + 1, totalChunks, e.getMessage(), e);
+            log.error("上传文件分片失败: session={}, chunk={}, error={}",
+                    sessionId, chunkIndex + 1, e.getMessage(), e);
             return ApiResponse.exception(ErrorOperationStatus.FILE_UPLOAD_FAILED);
         }
     }
 
-    @PostMapping("/merge")
-    public ApiResponse<String> merge(
+    /**
+     * 原始流上传分片: 请求体即分片数据(application/octet-stream), 分片信息通过请求头传递
+     * 数据从请求输入流直接写入目标文件, 不经过 multipart 解析与临时文件
+     */
+    @PutMapping(value = "/upload/raw", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ApiResponse<String> uploadRaw(
             @RequestHeader("Authorization") String token,
-            @RequestParam("filename") String filename,
-            @RequestParam("size") Long size,
-            @RequestParam("chunksCount") int chunksCount,
-            @RequestParam("path") String path) {
+            @RequestHeader("X-Upload-Session") String sessionId,
+            @RequestHeader("X-Chunk-Index") int chunkIndex,
+            @RequestHeader("X-Chunk-Offset") long offset,
+            @RequestHeader("X-Chunk-Length") long length,
+            @RequestHeader(value = "X-Chunk-Hash", required = false) String chunkHash,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            HttpServletRequest request) {
         long startTime = System.currentTimeMillis();
-        log.info("收到文件合并请求: filename={}, size={}字节, chunksCount={}, path={}",
-                filename, size, chunksCount, path);
         try {
             // 参数验证
-            if (chunksCount <= 0) {
-                return ApiResponse.error(400, "分片数量必须大于0");
+            if (StringUtils.isBlank(sessionId)) {
+                return ApiResponse.exception(ErrorOperationStatus.UPLOAD_SESSION_NOT_FOUND);
+            }
+
+            if (length <= 0) {
+                return ApiResponse.exception(ErrorOperationStatus.FILE_EMPTY);
             }
-            if (size <= 0) {
-                return ApiResponse.error(400, "文件大小必须大于0");
+
+            // 未压缩时要求明确的 Content-Length, 避免分块编码时读取超出声明长度的数据;
+            // 压缩请求体的 X-Chunk-Length 为解压后大小, 解压数据量由服务层按该值截止
+            boolean encoded = StringUtils.isNotBlank(contentEncoding) && !"identity".equalsIgnoreCase(contentEncoding);
+            if (!encoded && request.getContentLengthLong() != length) {
+                return ApiResponse.error(400, String.format("Content-Length与分片长度不一致: %d, %d",
+                        request.getContentLengthLong(), length));
             }
 
             User user = getUserFromToken();
-            fileService.mergeFile(user, filename, size, chunksCount, path);
+            fileService.uploadChunkStream(user, sessionId, request.getInputStream(), chunkIndex, offset, length,
+                    chunkHash, contentEncoding);
 
-            long duration = System.currentTimeMillis() - startTime;
-            log.info("文件合并成功: {} (耗时: {}ms)", filename, duration);
+            log.info("用户: {} 上传分片成功(原始流{}): session={} [{}] 耗时: {}ms", user.getNickname(),
+                    encoded ? ", " + contentEncoding + " " + request.getContentLengthLong() + "/" + length : "",
+                    sessionId, chunkIndex + 1, System.currentTimeMillis() - startTime);
 
-            return ApiResponse.success("文件合并成功！");
+            return ApiResponse.success("分片上传成功");
+        } catch (CustomException e) {
+            log.warn("上传文件分片失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("上传文件分片失败: session={}, chunk={}, error={}",
+                    sessionId, chunkIndex + 1, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.FILE_UPLOAD_FAILED);
+        }
+    }
 
+    /**
+     * 批量上传: manifest 为 JSON 清单, 每项通过 part 引用请求中的一个文件字段
+     * 可混合携带多个会话分片与完整小文件, 整批只鉴权一次, 逐项返回处理结果
+     */
+    @PostMapping("/upload/batch")
+    public ApiResponse<List<BatchUploadResult>> uploadBatch(
+            @RequestHeader("Authorization") String token,
+            @RequestParam("manifest") String manifest,
+            @RequestParam Map<String, MultipartFile> parts) {
+        long startTime = System.currentTimeMillis();
+        try {
+            List<BatchUploadItem> items = JsonUtil.fromJson(manifest, new TypeReference<List<BatchUploadItem>>() {
+            });
+            User user = getUserFromToken();
+            List<BatchUploadResult> results = fileService.uploadBatch(user, items, parts);
+
+            log.info("用户: {} 批量上传: {}项 (耗时: {}ms)", user.getNickname(), items.size(),
+                    System.currentTimeMillis() - startTime);
+            return ApiResponse.success(results);
+        } catch (JsonUtil.JsonException e) {
+            log.warn("批量上传清单解析失败: {}", e.getMessage());
+            return ApiResponse.error(400, "批量上传清单格式错误");
+        } catch (CustomException e) {
+            log.warn("批量上传失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
         } catch (Exception e) {
-            log.error("合并文件失败: filename={}, error={}", filename, e.getMessage(), e);
+            log.error("批量上传失败: error={}", e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.FILE_UPLOAD_FAILED);
+        }
+    }
+
+    /**
+     * 取消上传会话, 释放预留的存储容量
+     */
+    @PostMapping("/upload/abort")
+    public ApiResponse<String> abortUpload(
+            @RequestHeader("Authorization") String token,
+            @RequestParam("sessionId") String sessionId) {
+        try {
+            User user = getUserFromToken();
+            fileService.abortUpload(user, sessionId);
+            return ApiResponse.success("上传已取消");
+        } catch (CustomException e) {
+            log.warn("取消上传失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        }
+    }
+
+    /**
+     * 提交合并任务, 立即返回任务信息, 进度通过 /merge/status 查询
+     */
+    @PostMapping("/merge")
+    public ApiResponse<MergeJob> merge(
+            @RequestHeader("Authorization") String token,
+            @RequestParam("sessionId") String sessionId,
+            @RequestParam("path") String path,
+            @RequestParam(value = "merkleRoot", required = false) String merkleRoot) {
+        log.info("收到文件合并请求: session={}, path={}", sessionId, path);
+        try {
+            // 参数验证
+            if (StringUtils.isBlank(sessionId)) {
+                return ApiResponse.exception(ErrorOperationStatus.UPLOAD_SESSION_NOT_FOUND);
+            }
+
+            User user = getUserFromToken();
+            MergeJob job = mergeJobService.submit(user, sessionId, path, merkleRoot);
+            return ApiResponse.success("合并任务已提交", job);
+
+        } catch (CustomException e) {
+            log.warn("合并文件失败: {}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("合并文件失败: session={}, error={}", sessionId, e.getMessage(), e);
             return ApiResponse.exception(ErrorOperationStatus.FILE_MERGE_FAILED);
         }
     }
 
+    /**
+     * 查询合并任务进度: 阶段、已合并字节数, 完成后返回文件ID
+     */
+    @GetMapping("/merge/status")
+    public ApiResponse<MergeJob> mergeStatus(@RequestParam("jobId") String jobId) {
+        try {
+            User user = getUserFromToken();
+            return ApiResponse.success(mergeJobService.getJob(user.getId(), jobId));
+        } catch (CustomException e) {
+            return ApiResponse.exception(e);
+        }
+    }
+
     @PostMapping("/uploadAvatar")
     public ApiResponse<User> uploadAvatar(@RequestHeader("Authorization") String token,
             @RequestParam("avatar") MultipartFile file) {
@@ -231,6 +537,9 @@ public class FileController {
             log.info("用户: {} 创建文件成功: {}", user.getNickname(), fileName);
             return ApiResponse.success("文件创建成功！");
 
+        } catch (CustomException e) {
+            log.warn("创建文件参数错误: {}", e.getMessage());
+            return ApiResponse.exception(e);
         } catch (IllegalArgumentException e) {
             log.warn("创建文件参数错误: {}", e.getMessage());
             return ApiResponse.error(400, e.getMessage());
@@ -242,41 +551,104 @@ public class FileController {
     }
 
     /**
-     * 下载文件
+     * 下载文件, 支持 Range 断点续传/多线程下载及多区间请求
      * 
-     * @param path 文件路径
-     * @return 文件内容
+     * @param fileId   文件ID
+     * @param fileName 下载文件名
+     * @param inline   是否以 inline 方式返回(在线播放)
      */
     @GetMapping("/download")
-    public ResponseEntity<Resource> download(
+    public void download(
             @RequestParam Long fileId,
-            @RequestParam String fileName) {
+            @RequestParam String fileName,
+            @RequestParam(value = "inline", defaultValue = "false") boolean inline,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         User user = getUserFromToken();
-        log.info("用户: {} 请求下载文件: fileId={}, fileName={}", user.getNickname(), fileId, fileName);
+        log.info("用户: {} 请求下载文件: fileId={}, fileName={}, range={}", user.getNickname(), fileId, fileName,
+                request.getHeader(HttpHeaders.RANGE));
         try {
             if (fileId == null && fileName.isEmpty()) {
                 throw new IllegalArgumentException("文件ID和文件名不能为空");
             }
 
             // 调用服务层获取文件
-            Resource resource = fileService.downloadFile(user, fileId, fileName);
-
-            // 设置响应头
-            return ResponseEntity.ok()
-                    .header(org.springframework.http.HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + java.net.URLEncoder.encode(fileName, "UTF-8") + "\"")
-                    .header(org.springframework.http.HttpHeaders.CONTENT_TYPE,
-                            org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE)
-                    .body(resource);
+            File file = fileService.downloadFile(user, fileId, fileName);
+            downloadService.writeFile(request, response, user.getId(), roleOf(user), file, fileName, inline);
         } catch (IllegalArgumentException e) {
             log.warn("下载文件参数错误: {}", e.getMessage());
             throw new CustomException(ErrorOperationStatus.INVALID_PATH);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                // 响应已开始输出, 多为客户端中断(暂停/断点续传), 无法再返回错误信息
+                log.debug("下载中断: fileId={}, error={}", fileId, e.getMessage());
+                return;
+            }
+            log.error("下载文件失败: filename={}, error={}", fileName, e.getMessage(), e);
+            throw new CustomException(ErrorOperationStatus.FILE_DOWNLOAD_FAIL);
+        } catch (CustomException e) {
+            throw e;
         } catch (Exception e) {
             log.error("下载文件失败: filename={}, error={}", fileName, e.getMessage(), e);
             throw new CustomException(ErrorOperationStatus.FILE_DOWNLOAD_FAIL);
         }
     }
 
+    /**
+     * 生成签名下载链接, 链接在有效期内无需 Authorization 头即可访问(支持 Range), 可直接用于 video/img 标签
+     *
+     * @param fileId 文件ID
+     * @param inline 是否以 inline 方式返回(在线播放)
+     * @return 链接(相对于服务端根路径)及过期时间(epoch 秒)
+     */
+    @GetMapping("/download-url")
+    public ApiResponse<SignedUrl> downloadUrl(
+            @RequestParam Long fileId,
+            @RequestParam(value = "inline", defaultValue = "false") boolean inline) {
+        User user = getUserFromToken();
+        log.info("用户: {} 请求下载链接: fileId={}", user.getNickname(), fileId);
+        try {
+            File file = fileService.downloadFile(user, fileId, null);
+            return ApiResponse.success(signedUrlService.createUrl(user, file, inline));
+        } catch (CustomException e) {
+            log.warn("生成下载链接失败: fileId={}, error={}", fileId, e.getMsg());
+            return ApiResponse.exception(e);
+        } catch (Exception e) {
+            log.error("生成下载链接失败: fileId={}, error={}", fileId, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.FILE_DOWNLOAD_FAIL);
+        }
+    }
+
+    /**
+     * 打包下载: 将选中的文件及文件夹(含子目录)以 ZIP 流式返回, 不生成临时压缩包
+     *
+     * @param fileIds 文件或文件夹ID
+     */
+    @GetMapping("/download-zip")
+    public void downloadZip(
+            @RequestParam("fileIds") List<Long> fileIds,
+            HttpServletResponse response) {
+        User user = getUserFromToken();
+        log.info("用户: {} 请求打包下载: fileIds={}", user.getNickname(), fileIds);
+        try {
+            String zipName = archiveService.archiveName(user, fileIds);
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\""
+                    + java.net.URLEncoder.encode(zipName, "UTF-8") + "\"");
+            archiveService.writeZip(user, fileIds, response.getOutputStream());
+        } catch (IllegalArgumentException e) {
+            log.warn("打包下载参数错误: {}", e.getMessage());
+            throw new CustomException(ErrorOperationStatus.PARAM_ERROR);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                log.debug("打包下载中断: fileIds={}, error={}", fileIds, e.getMessage());
+                return;
+            }
+            log.error("打包下载失败: fileIds={}, error={}", fileIds, e.getMessage(), e);
+            throw new CustomException(ErrorOperationStatus.FILE_DOWNLOAD_FAIL);
+        }
+    }
+
     @DeleteMapping("/delete")
     public ApiResponse<String> deleteFile(@RequestParam Long fileId) {
         User user = getUserFromToken();
@@ -291,8 +663,95 @@ public class FileController {
         }
     }
 
+    /**
+     * 批量删除(移入回收站), 所有选中项在一个事务中完成
+     *
+     * @param fileIds 文件或文件夹ID, 文件夹连同其内容
+     * @return 移入回收站的节点数
+     */
+    @PostMapping("/delete/batch")
+    public ApiResponse<Integer> deleteFiles(@RequestParam("fileIds") List<Long> fileIds) {
+        User user = getUserFromToken();
+        log.info("用户: {} 请求批量删除: {}项", user.getNickname(), fileIds.size());
+        try {
+            return ApiResponse.success(fileService.deleteFiles(user, fileIds));
+        } catch (CustomException e) {
+            log.warn("批量删除失败: reason={}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("批量删除参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("批量删除失败: fileIds={}, error={}", fileIds, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.FILE_DELETE_FAIL);
+        }
+    }
+
+    /**
+     * 从回收站还原, 已删除的上级目录一并还原; 原目录中已有同名文件时整体失败
+     *
+     * @return 还原的节点数
+     */
+    @PostMapping("/restore")
+    public ApiResponse<Integer> restoreFiles(@RequestParam("fileIds") List<Long> fileIds) {
+        User user = getUserFromToken();
+        log.info("用户: {} 请求还原文件: {}项", user.getNickname(), fileIds.size());
+        try {
+            return ApiResponse.success(fileService.restoreFiles(user, fileIds));
+        } catch (CustomException e) {
+            log.warn("还原文件失败: reason={}", e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("还原文件参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("还原文件失败: fileIds={}, error={}", fileIds, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.SYSTEM_ERROR);
+        }
+    }
+
+    /**
+     * 移动文件或文件夹, 子树随之移动, 不改写子节点; 所有选中项在一个事务中完成
+     *
+     * @param path 目标目录路径, 如 my-files/a/
+     */
+    @PostMapping("/move")
+    public ApiResponse<String> moveFiles(@RequestParam("fileIds") List<Long> fileIds, @RequestParam String path) {
+        User user = getUserFromToken();
+        log.info("用户: {} 请求移动文件: fileIds={}, path={}", user.getNickname(), fileIds, path);
+        try {
+            fileService.moveFiles(user, fileIds, path);
+            return ApiResponse.success("文件移动成功");
+        } catch (CustomException e) {
+            log.warn("移动文件失败: fileIds={}, reason={}", fileIds, e.getMessage());
+            return ApiResponse.exception(e);
+        } catch (IllegalArgumentException e) {
+            log.warn("移动文件参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("移动文件失败: fileIds={}, path={}, error={}", fileIds, path, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.SYSTEM_ERROR);
+        }
+    }
+
+    /**
+     * 文件大小, 文件夹为其中全部有效文件的总大小
+     */
+    @GetMapping("/size")
+    public ApiResponse<Long> fileSize(@RequestParam Long fileId) {
+        User user = getUserFromToken();
+        try {
+            return ApiResponse.success(fileService.getFileSize(user, fileId));
+        } catch (CustomException e) {
+            return ApiResponse.exception(e);
+        } catch (Exception e) {
+            log.error("获取文件大小失败: fileId={}, error={}", fileId, e.getMessage(), e);
+            return ApiResponse.exception(ErrorOperationStatus.SYSTEM_ERROR);
+        }
+    }
+
     @GetMapping("/search")
-    public ApiResponse<List<File>> searchFiles(@RequestParam String searchQuery) {
+    public ApiResponse<List<FileItem>> searchFiles(@RequestParam String searchQuery) {
         User user = getUserFromToken();
         log.info("用户: {} 请求搜索文件: query={}", user.getNickname(), searchQuery);
         try {
@@ -300,7 +759,7 @@ public class FileController {
             log.error("搜索查询不能为空");
             return ApiResponse.exception(ErrorOperationStatus.INVALID_FILENAME);
         }
-            List<File> files = fileService.searchFiles(user, searchQuery);
+            List<FileItem> files = fileService.searchFiles(user, searchQuery);
             log.info("用户: {} 搜索文件成功: query={}, resultCount={}", user.getNickname(), searchQuery, files.size());
             return ApiResponse.success(files);
         } catch (Exception e) {
@@ -313,4 +772,8 @@ public class FileController {
         String email = SecurityContextHolder.getContext().getAuthentication().getName();
         return userService.getUserInfo(email);
     }
+
+    private UserRole roleOf(User user) {
+        return UserRole.of(user.getRole() == null ? null : user.getRole().getName());
+    }
 }
@@ -0,0 +1,28 @@
+package cn.lmao.cloudown.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量上传清单中的一项, part 对应 multipart 请求中的文件字段名
+ * 带 sessionId 时为上传会话的一个分片, 否则为一个完整的小文件
+ */
+@Data
+@NoArgsConstructor
+public class BatchUploadItem {
+
+    private String part;
+
+    // 分片: 会话ID、分片索引及可选的分片摘要
+    private String sessionId;
+    private Integer index;
+    private String chunkHash;
+
+    // 完整小文件: 文件名及存放路径
+    private String fileName;
+    private String path;
+
+    public boolean isChunk() {
+        return sessionId != null && !sessionId.isBlank();
+    }
+}
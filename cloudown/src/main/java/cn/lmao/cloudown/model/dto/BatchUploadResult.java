@@ -0,0 +1,33 @@
+package cn.lmao.cloudown.model.dto;
+
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 批量上传中单项的处理结果
+ */
+@Getter
+@AllArgsConstructor
+public class BatchUploadResult {
+
+    private static final int SUCCESS_CODE = 200;
+
+    private final String part;
+    private final int code;
+    private final String msg;
+    // 完整小文件上传成功后的文件ID
+    private final Long fileId;
+
+    public static BatchUploadResult success(String part, Long fileId) {
+        return new BatchUploadResult(part, SUCCESS_CODE, "success", fileId);
+    }
+
+    public static BatchUploadResult error(String part, int code, String msg) {
+        return new BatchUploadResult(part, code, msg, null);
+    }
+
+    public static BatchUploadResult error(String part, ErrorOperationStatus status) {
+        return error(part, status.getCode(), status.getMsg());
+    }
+}
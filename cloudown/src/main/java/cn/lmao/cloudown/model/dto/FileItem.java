@@ -0,0 +1,25 @@
+package cn.lmao.cloudown.model.dto;
+
+import java.time.LocalDateTime;
+
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 文件列表/搜索结果的只读视图
+ * 通过构造器投影直接从 file 表取列, 不加载 File 实体及其关联的 User
+ */
+@Getter
+@AllArgsConstructor
+public class FileItem {
+
+    private final Long id;
+    private final String name;
+    private final Long size;
+    private final String type;
+    private final String thumbnailPath;
+    private final FileStatus status;
+    private final LocalDateTime createTime;
+    private final LocalDateTime updateTime;
+}
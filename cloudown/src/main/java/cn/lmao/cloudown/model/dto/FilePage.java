@@ -0,0 +1,18 @@
+package cn.lmao.cloudown.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 游标分页结果
+ */
+@Getter
+@AllArgsConstructor
+public class FilePage<T> {
+
+    private final List<T> items;
+    // 下一页游标, 没有更多数据时为 null
+    private final String nextCursor;
+}
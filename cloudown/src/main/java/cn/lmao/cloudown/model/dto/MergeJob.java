@@ -0,0 +1,72 @@
+package cn.lmao.cloudown.model.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 异步合并任务, 由合并线程更新进度, 前端通过任务ID轮询
+ */
+@Getter
+public class MergeJob {
+
+    public enum Phase {
+        QUEUED,      // 排队中
+        VALIDATING,  // 校验分片及 Merkle 根
+        MERGING,     // 合并分片
+        VERIFYING,   // 计算内容哈希
+        THUMBNAIL,   // 生成缩略图
+        FINALIZING,  // 保存文件记录
+        DONE,
+        FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString().replace("-", "");
+    private final String sessionId;
+    @JsonIgnore
+    private final Long userId;
+    private final long totalBytes;
+    private final LocalDateTime createTime = LocalDateTime.now();
+
+    @Setter
+    private volatile Phase phase = Phase.QUEUED;
+    @Setter
+    private volatile long bytesMerged;
+    private volatile Long fileId;
+    private volatile Integer errorCode;
+    private volatile String errorMsg;
+    private volatile LocalDateTime finishTime;
+
+    public MergeJob(String sessionId, Long userId, long totalBytes) {
+        this.sessionId = sessionId;
+        this.userId = userId;
+        this.totalBytes = totalBytes;
+    }
+
+    public boolean isFinished() {
+        return phase == Phase.DONE || phase == Phase.FAILED;
+    }
+
+    public void complete(Long fileId) {
+        this.fileId = fileId;
+        this.bytesMerged = totalBytes;
+        this.finishTime = LocalDateTime.now();
+        this.phase = Phase.DONE;
+    }
+
+    public void fail(int code, String msg) {
+        this.errorCode = code;
+        this.errorMsg = msg;
+        this.finishTime = LocalDateTime.now();
+        this.phase = Phase.FAILED;
+    }
+
+    public void fail(ErrorOperationStatus status) {
+        fail(status.getCode(), status.getMsg());
+    }
+}
@@ -0,0 +1,17 @@
+package cn.lmao.cloudown.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 限时下载链接
+ */
+@Getter
+@AllArgsConstructor
+public class SignedUrl {
+
+    // 相对于服务端根路径的链接
+    private final String url;
+    // 过期时间(epoch 秒)
+    private final long expiresAt;
+}
@@ -0,0 +1,17 @@
+package cn.lmao.cloudown.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 服务端协商的上传参数
+ */
+@Getter
+@AllArgsConstructor
+public class UploadPlan {
+
+    private final long chunkSize;
+    private final int totalChunks;
+    // 建议的客户端并发分片数
+    private final int concurrency;
+}
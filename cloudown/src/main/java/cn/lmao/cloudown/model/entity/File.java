@@ -5,6 +5,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.ColumnDefault;
 
+import cn.lmao.cloudown.model.enums.FileCategory;
+import cn.lmao.cloudown.util.FileTypeChecker;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.time.LocalDateTime;
@@ -12,8 +15,22 @@ import java.time.LocalDateTime;
 @Entity
 @Data
 @NoArgsConstructor
-@Table(name = "file")
+@Table(name = "file", uniqueConstraints = {
+        // 同一目录下有效文件不重名; live 仅有效记录为 TRUE, 回收站中的记录为 NULL, 互不冲突
+        @UniqueConstraint(name = "uk_file_user_parent_name", columnNames = {"user_id", "parent_id", "file_name", "live"})
+}, indexes = {
+        @Index(name = "idx_file_hash", columnList = "file_hash"),
+        // 目录列表: 按用户、父目录、状态定位, 默认按创建时间排序时无需额外排序
+        @Index(name = "idx_file_user_parent_status", columnList = "user_id, parent_id, status, create_time"),
+        // 分类视图
+        @Index(name = "idx_file_user_category_status", columnList = "user_id, category, status, create_time")
+})
 public class File {
+
+    // 根目录路径及其下节点的 parentId
+    public static final String ROOT_PATH = "my-files/";
+    public static final long ROOT_ID = 0L;
+
     @Id
     @Column(name = "file_id")
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,10 +42,15 @@ public class File {
     @Column(name = "file_path", nullable = false)
     private String path;
 
-    //相对路径
+    //旧版本记录的所在目录, 仅供目录树迁移读取; 新记录不再写入(保持默认值), 所在目录以 parentId 及 file_closure 为准
+    @JsonIgnore
     @Column(name = "relative_path", nullable = false)
     private String relativePath = "/";
 
+    //父目录ID, 根目录下为 ROOT_ID
+    @Column(name = "parent_id")
+    private Long parentId;
+
     //缩略图路径
     @Column(name = "thumbnail_path")
     private String thumbnailPath;
@@ -49,6 +71,21 @@ public class File {
     @Column(name = "status", length = 20) // 确保长度足够
     private FileStatus status = FileStatus.ACTIVE;
 
+    // 同名约束标记, 随 status 维护; 批量修改状态的语句需同时更新
+    @JsonIgnore
+    @Column(name = "live")
+    private Boolean live;
+
+    // 移入回收站的批次, 同一次删除操作中的节点相同; 还原时只还原与选中项同批次的后代, 有效记录为 NULL
+    @JsonIgnore
+    @Column(name = "trash_batch", length = 36)
+    private String trashBatch;
+
+    // 入库及更新时由文件名计算, 分类视图按此列查询
+    @Enumerated(EnumType.STRING)
+    @Column(name = "category", length = 16)
+    private FileCategory category;
+
     @ManyToOne
     @JoinColumn(name = "user_id")
     @JsonIgnore
@@ -63,11 +100,16 @@ public class File {
     @PrePersist
     protected void onCreate() {
         createTime = LocalDateTime.now();
+        category = FileTypeChecker.getCategory(name, type);
+        live = status == FileStatus.ACTIVE ? Boolean.TRUE : null;
     }
 
     @PreUpdate
     protected void onUpdate() {
         updateTime = LocalDateTime.now();
+        // 重命名可能改变后缀
+        category = FileTypeChecker.getCategory(name, type);
+        live = status == FileStatus.ACTIVE ? Boolean.TRUE : null;
     }
 
     //构造函数
@@ -0,0 +1,42 @@
+package cn.lmao.cloudown.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 目录闭包表: 每个节点与其自身及所有上级目录各一行(depth 为层级差, 自身为0)
+ * 子树的查询、删除、移动及大小统计都是一条按 ancestor_id 定位的索引查询, 移动/重命名不改写子节点
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@IdClass(FileClosure.ClosureId.class)
+@Table(name = "file_closure", indexes = {
+        // 查询节点的上级目录
+        @Index(name = "idx_file_closure_descendant", columnList = "descendant_id, ancestor_id")
+})
+public class FileClosure {
+    @Id
+    @Column(name = "ancestor_id")
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id")
+    private Long descendantId;
+
+    @Column(name = "depth", nullable = false)
+    private Integer depth;
+
+    // 复合主键
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ClosureId implements Serializable {
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
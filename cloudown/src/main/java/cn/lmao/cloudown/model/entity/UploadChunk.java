@@ -0,0 +1,53 @@
+package cn.lmao.cloudown.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 已接收分片的摘要记录, 合并时据此构建 Merkle 根, 无需再次读取文件
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@IdClass(UploadChunk.ChunkId.class)
+@Table(name = "upload_chunk")
+public class UploadChunk {
+    @Id
+    @Column(name = "session_id", length = 32)
+    private String sessionId;
+
+    @Id
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    //分片 SHA-256 摘要
+    @Column(name = "chunk_digest", nullable = false, length = 32)
+    private byte[] digest;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Long size;
+
+    @Column(name = "create_time", nullable = false, columnDefinition = "TIMESTAMP(0)")
+    private LocalDateTime createTime = LocalDateTime.now();
+
+    public UploadChunk(String sessionId, Integer chunkIndex, byte[] digest, Long size) {
+        this.sessionId = sessionId;
+        this.chunkIndex = chunkIndex;
+        this.digest = digest;
+        this.size = size;
+    }
+
+    // 复合主键
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChunkId implements Serializable {
+        private String sessionId;
+        private Integer chunkIndex;
+    }
+}
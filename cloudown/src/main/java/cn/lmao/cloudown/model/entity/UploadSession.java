@@ -0,0 +1,110 @@
+package cn.lmao.cloudown.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+/**
+ * 分片上传会话
+ * 以 (用户, quickHash) 标识一次上传, 记录已接收的分片位图, 服务重启后可继续断点续传
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "upload_session", indexes = {
+        @Index(name = "idx_upload_session_user_hash", columnList = "user_id, quick_hash")
+})
+public class UploadSession {
+    @Id
+    @Column(name = "session_id", length = 32)
+    private String id;
+
+    // 只保存用户ID, 分片上传热路径无需加载User实体
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "quick_hash", nullable = false, length = 64)
+    private String quickHash;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Long chunkSize;
+
+    @Column(name = "total_chunks", nullable = false)
+    private Integer totalChunks;
+
+    //上传模式: chunk | direct, 创建时确定, 避免配置变更影响进行中的上传
+    @Column(name = "upload_mode", nullable = false, length = 10)
+    private String uploadMode;
+
+    //已接收分片位图(BitSet.toByteArray)
+    @JsonIgnore
+    @Column(name = "received_chunks", columnDefinition = "MEDIUMBLOB")
+    private byte[] receivedChunks;
+
+    //分片摘要构建的 Merkle 根(十六进制), 合并时生成
+    @Column(name = "merkle_root", length = 64)
+    private String merkleRoot;
+
+    //会话持有的容量预留, 合并或中止时清零; null 表示会话创建时未预留
+    @Column(name = "reserved_bytes")
+    private Long reservedBytes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private SessionStatus status = SessionStatus.UPLOADING;
+
+    @Column(name = "create_time", nullable = false, updatable = false, columnDefinition = "TIMESTAMP(0)")
+    private LocalDateTime createTime;
+
+    @Column(name = "update_time", nullable = false, columnDefinition = "TIMESTAMP(0)")
+    private LocalDateTime updateTime = LocalDateTime.now();
+
+    // 内存中的分片位图, 由 receivedChunks 懒加载
+    @Transient
+    @JsonIgnore
+    private BitSet chunkBitmap;
+
+    // 内存中的分片摘要（按分片索引）, 由 upload_chunk 表懒加载
+    @Transient
+    @JsonIgnore
+    private byte[][] chunkDigests;
+
+    @PrePersist
+    protected void onCreate() {
+        createTime = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updateTime = LocalDateTime.now();
+    }
+
+    /**
+     * 获取已接收分片位图, 调用方修改时需对会话对象加锁
+     */
+    public BitSet getChunkBitmap() {
+        if (chunkBitmap == null) {
+            chunkBitmap = receivedChunks == null ? new BitSet(totalChunks) : BitSet.valueOf(receivedChunks);
+        }
+        return chunkBitmap;
+    }
+
+    // 会话状态枚举
+    public enum SessionStatus {
+        UPLOADING,  // 上传中
+        COMPLETED,  // 已完成
+        ABORTED,    // 已取消
+        EXPIRED     // 已过期
+    }
+}
@@ -2,6 +2,8 @@ package cn.lmao.cloudown.model.entity;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -38,10 +40,15 @@ public class User {
     @Column(name = "avatar_url")
     private String avatarUrl;
 
-    //使用容量
-    @Column(name = "used_capacity", nullable = false)
+    //使用容量, 仅由容量账本(QuotaService)通过条件更新修改, 保存实体时不会覆盖
+    @Column(name = "used_capacity", nullable = false, updatable = false)
     private Long usedCapacity = 0L;
 
+    //上传中会话预留的容量
+    @ColumnDefault("0")
+    @Column(name = "reserved_capacity", nullable = false, updatable = false)
+    private Long reservedCapacity = 0L;
+
     //总容量 
     @Column(name = "total_capacity", nullable = false)
     private Long totalCapacity = 1024L * 1024L * 10L;
@@ -73,6 +73,16 @@ public enum ErrorOperationStatus {
     FILE_PERMISSION_DENIED(10214, "文件访问权限不足"),
     FILE_EXISTS(10215, "文件或目录已存在"),
     FILE_NOT_IMAGE(10216, "文件不是图片"),
+    UPLOAD_SESSION_NOT_FOUND(10217, "上传会话不存在或已过期"),
+    CHUNK_CHECKSUM_MISMATCH(10218, "分片校验失败, 请重新上传该分片"),
+    MERKLE_ROOT_MISMATCH(10219, "文件完整性校验失败"),
+    MERGE_JOB_NOT_FOUND(10220, "合并任务不存在或已过期"),
+    MERGE_QUEUE_FULL(10221, "合并任务繁忙, 请稍后重试"),
+    UPLOAD_THROTTLED(10222, "上传繁忙, 请稍后重试"),
+    DOWNLOAD_URL_INVALID(10223, "下载链接无效"),
+    DOWNLOAD_URL_EXPIRED(10224, "下载链接已过期"),
+    CHUNK_CONFLICT(10225, "分片已接收, 重传内容与已接收内容不一致"),
+    CHUNK_MISSING(10226, "部分分片数据已丢失, 请重新上传缺失的分片"),
 
     // 系统/数据相关
     DATA_INTEGRITY_VIOLATION(10301, "数据完整性冲突"),
@@ -0,0 +1,35 @@
+package cn.lmao.cloudown.model.enums;
+
+import lombok.Getter;
+
+/**
+ * 文件分类(持久化于 file.category), 与前端分类视图的 category 参数对应
+ */
+@Getter
+public enum FileCategory {
+    IMAGES("images"),
+    DOCUMENTS("documents"),
+    VIDEOS("videos"),
+    MUSIC("music"),
+    OTHERS("others"),
+    // 文件夹不属于任何分类视图
+    FOLDER("folder");
+
+    private final String code;
+
+    FileCategory(String code) {
+        this.code = code;
+    }
+
+    /**
+     * 按分类视图参数查找, 未知分类返回 null
+     */
+    public static FileCategory fromCode(String code) {
+        for (FileCategory category : values()) {
+            if (category.code.equals(code)) {
+                return category;
+            }
+        }
+        return null;
+    }
+}
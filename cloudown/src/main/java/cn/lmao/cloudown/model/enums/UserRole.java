@@ -16,5 +16,17 @@ public enum UserRole {
     UserRole(String role) {
         this.role = role;
     }
-    
+
+    /**
+     * 按角色名(中文名或枚举名)查找, 未知角色按普通用户处理
+     */
+    public static UserRole of(String roleName) {
+        for (UserRole userRole : values()) {
+            if (userRole.role.equals(roleName) || userRole.name().equalsIgnoreCase(roleName)) {
+                return userRole;
+            }
+        }
+        return USER;
+    }
+
 }
@@ -0,0 +1,59 @@
+package cn.lmao.cloudown.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import cn.lmao.cloudown.model.entity.FileClosure;
+
+/**
+ * 闭包表维护, 均为单条集合语句; 子查询包一层派生表, 避免 MySQL 不允许在修改语句中直接查询目标表
+ */
+public interface FileClosureRepository extends JpaRepository<FileClosure, FileClosure.ClosureId> {
+
+    // 新节点: 复制父目录的所有上级(层级+1), 再加自身一行; 根目录下的节点只有自身一行
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO file_closure (ancestor_id, descendant_id, depth) "
+            + "SELECT c.ancestor_id, f.file_id, c.depth + 1 FROM file_closure c JOIN file f ON f.file_id = :nodeId "
+            + "WHERE c.descendant_id = :parentId "
+            + "UNION ALL SELECT file_id, file_id, 0 FROM file WHERE file_id = :nodeId", nativeQuery = true)
+    int insertNode(@Param("nodeId") Long nodeId, @Param("parentId") Long parentId);
+
+    // 移动前断开各子树与原上级目录之间的关系, 子树内部的关系保持不变; 各子树之间不能互相包含
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM file_closure "
+            + "WHERE descendant_id IN (SELECT s.id FROM (SELECT descendant_id AS id FROM file_closure "
+            + "WHERE ancestor_id IN (:nodeIds)) s) "
+            + "AND ancestor_id IN (SELECT a.id FROM (SELECT ancestor_id AS id FROM file_closure "
+            + "WHERE descendant_id IN (:nodeIds) AND depth > 0) a)", nativeQuery = true)
+    int detachSubtrees(@Param("nodeIds") List<Long> nodeIds);
+
+    // 移动后将子树挂到新父目录: 新父目录的每个上级 x 子树中的每个节点
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO file_closure (ancestor_id, descendant_id, depth) "
+            + "SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1 "
+            + "FROM file_closure a CROSS JOIN file_closure d "
+            + "WHERE a.descendant_id = :parentId AND d.ancestor_id IN (:nodeIds)", nativeQuery = true)
+    int attachSubtrees(@Param("nodeIds") List<Long> nodeIds, @Param("parentId") Long parentId);
+
+    // 选中项中位于其他选中项子树内的节点, 批量操作时随上级一起处理
+    @Query("SELECT c.descendantId FROM FileClosure c "
+            + "WHERE c.ancestorId IN :ids AND c.descendantId IN :ids AND c.depth > 0")
+    List<Long> findNested(@Param("ids") Collection<Long> ids);
+
+    // 清除节点作为后代的所有关系(迁移重试前)
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileClosure c WHERE c.descendantId IN :ids")
+    int deleteByDescendantIds(@Param("ids") List<Long> ids);
+
+    boolean existsByAncestorIdInAndDescendantId(Collection<Long> ancestorIds, Long descendantId);
+}
@@ -1,25 +1,147 @@
 package cn.lmao.cloudown.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import cn.lmao.cloudown.model.dto.FileItem;
 import cn.lmao.cloudown.model.entity.File;
 import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.FileCategory;
 
-public interface FileRepository extends JpaRepository<File, Long> {
+public interface FileRepository extends JpaRepository<File, Long>, JpaSpecificationExecutor<File>,
+        FileRepositoryCustom {
     List<File> findByUser(User user);
 
-    File findByUserAndName(User user, String name);
-
     Optional<File> findByUserAndId(User user, Long id);
 
-    @Query("SELECT f FROM File f WHERE f.relativePath LIKE CONCAT(:prefix, '%') AND LENGTH(f.relativePath) > LENGTH(:prefix)")
-    List<File> findByRelativePathStartingWith(String prefix);
+    // 目录下是否已有同名的有效节点, 命中 uk_file_user_parent_name
+    boolean existsByUserAndParentIdAndNameAndLiveTrue(User user, Long parentId, String name);
+
+    // 目录下指定名称的有效子目录ID
+    @Query("SELECT f.id FROM File f WHERE f.user = :user AND f.parentId = :parentId AND f.name = :name "
+            + "AND f.type = '文件夹' AND f.live = TRUE")
+    List<Long> findLiveFolderIds(@Param("user") User user, @Param("parentId") Long parentId,
+            @Param("name") String name);
+
+    long countByUserAndIdIn(User user, Collection<Long> ids);
+
+    long countByUserAndIdInAndStatus(User user, Collection<Long> ids, File.FileStatus status);
+
+    // 各子树中指定状态的节点 (id, path), 含根节点
+    @Query("SELECT f.id, f.path FROM FileClosure c JOIN File f ON f.id = c.descendantId "
+            + "WHERE c.ancestorId IN :rootIds AND f.status = :status")
+    List<Object[]> findSubtreePaths(@Param("rootIds") Collection<Long> rootIds,
+            @Param("status") File.FileStatus status);
+
+    // 子树中指定状态的节点, 不含根节点; 按层级排序, 上级目录在前
+    @Query("SELECT f FROM FileClosure c JOIN File f ON f.id = c.descendantId "
+            + "WHERE c.ancestorId = :rootId AND c.depth > 0 AND f.status = :status ORDER BY c.depth, f.id")
+    List<File> findDescendants(@Param("rootId") Long rootId, @Param("status") File.FileStatus status);
+
+    // 子树中指定状态的文件总大小(文件夹大小为0)
+    @Query("SELECT COALESCE(SUM(f.size), 0) FROM FileClosure c JOIN File f ON f.id = c.descendantId "
+            + "WHERE c.ancestorId = :rootId AND f.status = :status")
+    long sumSubtreeSize(@Param("rootId") Long rootId, @Param("status") File.FileStatus status);
+
+    // 各子树中的有效节点一次性移入回收站, 记为同一批次; 已在回收站中的节点保留原批次
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.status = :status, f.live = NULL, f.trashBatch = :batch, f.updateTime = :now "
+            + "WHERE f.live = TRUE "
+            + "AND f.id IN (SELECT c.descendantId FROM FileClosure c WHERE c.ancestorId IN :rootIds)")
+    int trashSubtrees(@Param("rootIds") Collection<Long> rootIds, @Param("status") File.FileStatus status,
+            @Param("batch") String batch, @Param("now") LocalDateTime now);
+
+    // 回收站中节点的删除批次 (id, trashBatch)
+    @Query("SELECT f.id, f.trashBatch FROM File f WHERE f.id IN :ids AND f.status = :deleted")
+    List<Object[]> findTrashBatches(@Param("ids") Collection<Long> ids, @Param("deleted") File.FileStatus deleted);
+
+    // 从回收站还原各子树中同一批次删除的节点(批次为空的旧数据按空串匹配), 并还原已删除的上级目录, 使还原的节点可见
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.status = :status, f.live = TRUE, f.trashBatch = NULL, f.updateTime = :now "
+            + "WHERE f.status = :deleted "
+            + "AND (f.id IN (SELECT c.descendantId FROM FileClosure c WHERE c.ancestorId IN :rootIds) "
+            + "AND COALESCE(f.trashBatch, '') = :batch "
+            + "OR f.id IN (SELECT c.ancestorId FROM FileClosure c WHERE c.descendantId IN :rootIds))")
+    int restoreSubtrees(@Param("rootIds") Collection<Long> rootIds, @Param("batch") String batch,
+            @Param("status") File.FileStatus status, @Param("deleted") File.FileStatus deleted,
+            @Param("now") LocalDateTime now);
+
+    // 目标目录中与选中项重名的有效节点数
+    @Query("SELECT COUNT(g) FROM File g WHERE g.user = :user AND g.parentId = :parentId AND g.live = TRUE "
+            + "AND g.id NOT IN :ids AND g.name IN (SELECT f.name FROM File f WHERE f.id IN :ids)")
+    long countNameConflicts(@Param("user") User user, @Param("parentId") Long parentId,
+            @Param("ids") Collection<Long> ids);
+
+    // 尚未迁移到目录树(parentId 为空)的用户
+    @Query("SELECT DISTINCT f.user.id FROM File f WHERE f.parentId IS NULL")
+    List<Long> findUserIdsWithoutParent();
+
+    // 用户的全部节点 (id, name, type, relativePath, parentId, status), 用于迁移目录树
+    @Query("SELECT f.id, f.name, f.type, f.relativePath, f.parentId, f.status FROM File f "
+            + "WHERE f.user.id = :userId ORDER BY f.id")
+    List<Object[]> findTreeRows(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.parentId = :parentId WHERE f.id IN :ids")
+    int updateParent(@Param("ids") Collection<Long> ids, @Param("parentId") Long parentId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.live = TRUE WHERE f.id IN :ids")
+    int markLive(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.name = :name WHERE f.id = :id")
+    int updateName(@Param("id") Long id, @Param("name") String name);
+
+    // 按文件名搜索, 构造器投影只取列表所需的列
+    @Query("SELECT new cn.lmao.cloudown.model.dto.FileItem(f.id, f.name, f.size, f.type, f.thumbnailPath, f.status, "
+            + "f.createTime, f.updateTime) FROM File f "
+            + "WHERE f.user = :user AND f.status = :status AND f.name LIKE %:keyword%")
+    List<FileItem> searchItems(@Param("user") User user, @Param("keyword") String keyword,
+            @Param("status") File.FileStatus status);
+
+    Optional<File> findFirstByHashAndSize(String hash, Long size);
+
+    boolean existsByUserIdAndPath(Long userId, String path);
+
+    Optional<File> findFirstByUserAndHashAndSize(User user, String hash, Long size);
+
+    // 按ID游标分批读取 (id, hash), 用于加载布隆过滤器
+    @Query("SELECT f.id, f.hash FROM File f WHERE f.id > :afterId ORDER BY f.id")
+    List<Object[]> findHashesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // 按ID游标分批读取仍为临时哈希的文件 (id, path)
+    @Query("SELECT f.id, f.path FROM File f WHERE f.hash LIKE CONCAT(:prefix, '%') AND f.id > :afterId "
+            + "AND f.type <> '文件夹' ORDER BY f.id")
+    List<Object[]> findTempHashFilesAfter(@Param("prefix") String prefix, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    // 按ID游标分批读取尚未分类的文件 (id, name, type)
+    @Query("SELECT f.id, f.name, f.type FROM File f WHERE f.category IS NULL AND f.id > :afterId ORDER BY f.id")
+    List<Object[]> findUncategorizedAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.category = :category WHERE f.id IN :ids")
+    int updateCategory(@Param("ids") List<Long> ids, @Param("category") FileCategory category);
 
-    @Query("SELECT f FROM File f WHERE f.user = :user AND f.name LIKE %:keyword%")
-    List<File> searchByUserAndName(@Param("user") User user, @Param("keyword") String keyword);
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.hash = :hash WHERE f.id = :id")
+    int updateHash(@Param("id") Long id, @Param("hash") String hash);
 }
@@ -0,0 +1,15 @@
+package cn.lmao.cloudown.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.entity.File;
+
+public interface FileRepositoryCustom {
+
+    // 按条件查询列表视图, 只选取 FileItem 所需的列; limit <= 0 时不限制条数
+    List<FileItem> findItems(Specification<File> spec, Sort sort, int limit);
+}
@@ -0,0 +1,52 @@
+package cn.lmao.cloudown.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.entity.File;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * 列表视图查询
+ * Specification 的 fluent 查询只能返回实体, 这里用 Criteria 构造器投影, 查询结果不进入持久化上下文, 也不触发 User 的加载
+ */
+public class FileRepositoryCustomImpl implements FileRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FileItem> findItems(Specification<File> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FileItem> query = cb.createQuery(FileItem.class);
+        Root<File> root = query.from(File.class);
+        query.select(cb.construct(FileItem.class,
+                root.get("id"),
+                root.get("name"),
+                root.get("size"),
+                root.get("type"),
+                root.get("thumbnailPath"),
+                root.get("status"),
+                root.get("createTime"),
+                root.get("updateTime")));
+        if (spec != null) {
+            query.where(spec.toPredicate(root, query, cb));
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        TypedQuery<FileItem> typedQuery = entityManager.createQuery(query);
+        if (limit > 0) {
+            typedQuery.setMaxResults(limit);
+        }
+        return typedQuery.getResultList();
+    }
+}
@@ -0,0 +1,146 @@
+package cn.lmao.cloudown.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.FileCategory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+
+/**
+ * 文件列表查询条件
+ * 目录、状态、分类与排序均在数据库中完成, 目录列表与分类视图分别命中
+ * (user_id, parent_id, status, create_time) 与 (user_id, category, status, create_time) 索引
+ * 分页采用键集(游标)方式: 以上一页最后一行的 (排序值, id) 为起点继续扫描, 不使用 OFFSET
+ */
+public final class FileSpecifications {
+
+    public static final String CATEGORY_MY_FILES = "my-files";
+    public static final String CATEGORY_TRASH = "trash";
+
+    private static final char CURSOR_SEPARATOR = '|';
+
+    private FileSpecifications() {
+    }
+
+    /**
+     * 排序方式, 由 name-asc / time-desc / size-asc 等解析, 无法识别时按创建时间降序
+     */
+    public record ListSort(String field, boolean ascending) {
+
+        public static ListSort parse(String sort) {
+            if (sort == null) {
+                return new ListSort("createTime", false);
+            }
+            String field = switch (sort) {
+                case "name-asc", "name-desc" -> "name";
+                case "size-asc", "size-desc" -> "size";
+                default -> "createTime";
+            };
+            return new ListSort(field, sort.endsWith("-asc"));
+        }
+
+        /**
+         * 以 id 作为第二排序键, 排序值相同的行顺序稳定, 游标可唯一定位
+         */
+        public Sort toSort() {
+            Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+            return Sort.by(direction, field).and(Sort.by(direction, "id"));
+        }
+    }
+
+    /**
+     * 列表条件: my-files 为指定目录下的有效文件, trash 为回收站, 其他为分类视图(不含文件夹)
+     *
+     * @param folderId 目录ID, 仅 my-files 使用
+     */
+    public static Specification<File> listing(User user, Long folderId, String category) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("user"), user));
+            switch (category) {
+                case CATEGORY_MY_FILES -> {
+                    predicates.add(cb.equal(root.get("parentId"), folderId));
+                    predicates.add(cb.equal(root.get("status"), FileStatus.ACTIVE));
+                }
+                case CATEGORY_TRASH -> predicates.add(cb.equal(root.get("status"), FileStatus.DELETED));
+                default -> {
+                    predicates.add(cb.equal(root.get("status"), FileStatus.ACTIVE));
+                    FileCategory fileCategory = FileCategory.fromCode(category);
+                    predicates.add(fileCategory == null || fileCategory == FileCategory.FOLDER ? cb.disjunction()
+                            : cb.equal(root.get("category"), fileCategory));
+                }
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * 游标之后的行; cursor 为空时不限制
+     *
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static Specification<File> after(ListSort sort, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        long lastId;
+        Comparable<?> value;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(CURSOR_SEPARATOR);
+            String raw = decoded.substring(0, separator);
+            lastId = Long.parseLong(decoded.substring(separator + 1));
+            value = switch (sort.field()) {
+                case "name" -> raw;
+                case "size" -> Long.valueOf(raw);
+                default -> LocalDateTime.parse(raw);
+            };
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+
+        return (root, query, cb) -> {
+            Path<Long> id = root.get("id");
+            return switch (sort.field()) {
+                case "name" -> after(cb, root.get("name"), (String) value, id, lastId, sort.ascending());
+                case "size" -> after(cb, root.get("size"), (Long) value, id, lastId, sort.ascending());
+                default -> after(cb, root.get("createTime"), (LocalDateTime) value, id, lastId, sort.ascending());
+            };
+        };
+    }
+
+    /**
+     * 由本页最后一行生成下一页游标
+     */
+    public static String cursorOf(ListSort sort, FileItem last) {
+        Object value = switch (sort.field()) {
+            case "name" -> last.getName();
+            case "size" -> last.getSize();
+            default -> last.getCreateTime();
+        };
+        String raw = value + String.valueOf(CURSOR_SEPARATOR) + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // (field, id) 按排序方向严格位于 (value, lastId) 之后
+    private static <Y extends Comparable<? super Y>> Predicate after(CriteriaBuilder cb, Path<Y> field, Y value,
+            Path<Long> id, long lastId, boolean ascending) {
+        Predicate beyond = ascending ? cb.greaterThan(field, value) : cb.lessThan(field, value);
+        Predicate tie = cb.and(cb.equal(field, value),
+                ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId));
+        return cb.or(beyond, tie);
+    }
+}
@@ -0,0 +1,22 @@
+package cn.lmao.cloudown.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import cn.lmao.cloudown.model.entity.UploadChunk;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, UploadChunk.ChunkId> {
+
+    List<UploadChunk> findBySessionId(String sessionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadChunk c WHERE c.sessionId = :sessionId AND c.chunkIndex IN :chunkIndexes")
+    int deleteChunks(@Param("sessionId") String sessionId, @Param("chunkIndexes") Collection<Integer> chunkIndexes);
+}
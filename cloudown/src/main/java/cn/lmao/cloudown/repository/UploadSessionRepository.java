@@ -0,0 +1,56 @@
+package cn.lmao.cloudown.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import cn.lmao.cloudown.model.entity.UploadSession;
+import cn.lmao.cloudown.model.entity.UploadSession.SessionStatus;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findFirstByUserIdAndQuickHashAndStatusOrderByUpdateTimeDesc(
+            Long userId, String quickHash, SessionStatus status);
+
+    Optional<UploadSession> findByIdAndUserId(String id, Long userId);
+
+    // 按ID游标分页查询长时间未更新的会话
+    List<UploadSession> findByStatusAndUpdateTimeBeforeAndIdGreaterThanOrderByIdAsc(SessionStatus status,
+            LocalDateTime deadline, String afterId, Pageable pageable);
+
+    @Query("SELECT s.id FROM UploadSession s WHERE s.id IN :ids AND s.status = :status")
+    List<String> findIdsByStatus(@Param("ids") Collection<String> ids, @Param("status") SessionStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.receivedChunks = :bitmap, s.updateTime = :now WHERE s.id = :id")
+    int updateReceivedChunks(@Param("id") String id, @Param("bitmap") byte[] bitmap,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.merkleRoot = :merkleRoot, s.updateTime = :now WHERE s.id = :id")
+    int updateMerkleRoot(@Param("id") String id, @Param("merkleRoot") String merkleRoot,
+            @Param("now") LocalDateTime now);
+
+    // 取走会话的容量预留, 只有一次调用能成功, 保证预留不会被重复提交或释放
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.reservedBytes = 0, s.updateTime = :now "
+            + "WHERE s.id = :id AND s.reservedBytes > 0")
+    int clearReservedBytes(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.status = :status, s.updateTime = :now WHERE s.id = :id")
+    int updateStatus(@Param("id") String id, @Param("status") SessionStatus status,
+            @Param("now") LocalDateTime now);
+}
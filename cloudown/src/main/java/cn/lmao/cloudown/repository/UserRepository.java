@@ -1,10 +1,56 @@
 package cn.lmao.cloudown.repository;
 
+import java.time.LocalDateTime;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import cn.lmao.cloudown.model.entity.User;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     
     User getUserByEmail(String email);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.lastLoginTime = :time WHERE u.email = :email")
+    int updateLastLoginTime(@Param("email") String email, @Param("time") LocalDateTime time);
+
+    // 以下容量变更均为单条件更新, 不加载 User 实体, 返回 0 表示余量不足
+
+    @Query("SELECT u.totalCapacity - u.usedCapacity - u.reservedCapacity FROM User u WHERE u.id = :id")
+    Long findAvailableCapacity(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.reservedCapacity = u.reservedCapacity + :bytes WHERE u.id = :id "
+            + "AND u.usedCapacity + u.reservedCapacity + :bytes <= u.totalCapacity")
+    int reserveCapacity(@Param("id") Long id, @Param("bytes") long bytes);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.reservedCapacity = CASE WHEN u.reservedCapacity > :bytes "
+            + "THEN u.reservedCapacity - :bytes ELSE 0 END, u.usedCapacity = u.usedCapacity + :bytes WHERE u.id = :id")
+    int commitReservedCapacity(@Param("id") Long id, @Param("bytes") long bytes);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.reservedCapacity = CASE WHEN u.reservedCapacity > :bytes "
+            + "THEN u.reservedCapacity - :bytes ELSE 0 END WHERE u.id = :id")
+    int releaseReservedCapacity(@Param("id") Long id, @Param("bytes") long bytes);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.usedCapacity = u.usedCapacity + :bytes WHERE u.id = :id "
+            + "AND u.usedCapacity + u.reservedCapacity + :bytes <= u.totalCapacity")
+    int addUsedCapacity(@Param("id") Long id, @Param("bytes") long bytes);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.usedCapacity = CASE WHEN u.usedCapacity > :bytes "
+            + "THEN u.usedCapacity - :bytes ELSE 0 END WHERE u.id = :id")
+    int subtractUsedCapacity(@Param("id") Long id, @Param("bytes") long bytes);
 }
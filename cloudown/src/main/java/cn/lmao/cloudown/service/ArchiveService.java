@@ -0,0 +1,16 @@
+package cn.lmao.cloudown.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import cn.lmao.cloudown.model.entity.User;
+
+public interface ArchiveService {
+
+    // 压缩包的默认文件名: 仅选中一个文件夹时为该文件夹名
+    String archiveName(User user, List<Long> fileIds);
+
+    // 将选中的文件及文件夹(含子目录)以 ZIP 格式流式写出, 不在磁盘生成临时压缩包
+    void writeZip(User user, List<Long> fileIds, OutputStream outputStream) throws IOException;
+}
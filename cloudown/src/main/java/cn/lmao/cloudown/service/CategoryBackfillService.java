@@ -0,0 +1,74 @@
+package cn.lmao.cloudown.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import cn.lmao.cloudown.model.enums.FileCategory;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.util.FileTypeChecker;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 文件分类回填
+ * 分类列在新增和更新时由实体回调计算, 升级前的历史记录为 NULL, 启动后按ID游标分批补齐
+ * 每批按分类分组, 每个分类一条批量 UPDATE
+ */
+@Service
+@RequiredArgsConstructor
+public class CategoryBackfillService {
+
+    private final FileRepository fileRepository;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.category.backfill.enabled:true}")
+    private boolean backfillEnabled;
+
+    @Value("${file.category.backfill.batch-size:1000}")
+    private int backfillBatchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCategories() {
+        if (!backfillEnabled) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                long lastId = 0;
+                long updated = 0;
+                List<Object[]> batch;
+                do {
+                    batch = fileRepository.findUncategorizedAfter(lastId, PageRequest.of(0, backfillBatchSize));
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    Map<FileCategory, List<Long>> groups = new EnumMap<>(FileCategory.class);
+                    for (Object[] row : batch) {
+                        lastId = (Long) row[0];
+                        FileCategory category = FileTypeChecker.getCategory((String) row[1], (String) row[2]);
+                        groups.computeIfAbsent(category, c -> new ArrayList<>()).add(lastId);
+                    }
+                    for (Map.Entry<FileCategory, List<Long>> group : groups.entrySet()) {
+                        updated += fileRepository.updateCategory(group.getValue(), group.getKey());
+                    }
+                } while (batch.size() == backfillBatchSize);
+
+                if (updated > 0) {
+                    log.info("历史文件分类回填完成: {}个文件", updated);
+                }
+            } catch (Exception e) {
+                log.error("历史文件分类回填失败: {}", e.getMessage(), e);
+            }
+        });
+    }
+}
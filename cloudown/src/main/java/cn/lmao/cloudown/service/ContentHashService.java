@@ -0,0 +1,363 @@
+package cn.lmao.cloudown.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.RateLimiter;
+
+import cn.lmao.cloudown.model.entity.UploadSession;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.service.impl.UploadSessionServiceImpl;
+import cn.lmao.cloudown.util.FileUtil;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 文件内容哈希服务
+ * 1. 上传过程中按分片顺序增量计算 SHA-256
+ * 2. 布隆过滤器预判哈希是否已存在（秒传）
+ * 3. 后台限速回填历史 temp_ 哈希
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentHashService {
+
+    public static final String HASH_ALGORITHM = "SHA-256";
+    public static final String TEMP_HASH_PREFIX = "temp_";
+    private static final Pattern HASH_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private final FileRepository fileRepository;
+    private final UploadSessionService uploadSessionService;
+    private final ThreadPoolTaskExecutor fileHashTaskExecutor;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.hash.bloom.expected-insertions:1000000}")
+    private long bloomExpectedInsertions;
+
+    @Value("${file.hash.bloom.fpp:0.01}")
+    private double bloomFpp;
+
+    @Value("${file.hash.backfill.enabled:true}")
+    private boolean backfillEnabled;
+
+    @Value("${file.hash.backfill.batch-size:200}")
+    private int backfillBatchSize;
+
+    // 回填读取速率上限（每秒字节数）
+    @Value("${file.hash.backfill.rate:64MB}")
+    private DataSize backfillRate;
+
+    // 进行中上传会话的增量摘要状态
+    private final Map<String, DigestState> digestStates = new ConcurrentHashMap<>();
+
+    // 回填异步执行, 调度触发时上一轮仍未结束则跳过
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+
+    private volatile BloomFilter<CharSequence> bloomFilter;
+    // 布隆过滤器加载完成前, 所有查询都需回落到数据库
+    private volatile boolean bloomReady = false;
+
+    /**
+     * 启动后异步加载已有哈希到布隆过滤器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initBloomFilter() {
+        bloomFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                bloomExpectedInsertions, bloomFpp);
+        CompletableFuture.runAsync(() -> {
+            try {
+                long lastId = 0;
+                long loaded = 0;
+                List<Object[]> rows;
+                do {
+                    rows = fileRepository.findHashesAfter(lastId, PageRequest.of(0, 5000));
+                    for (Object[] row : rows) {
+                        lastId = (Long) row[0];
+                        String hash = (String) row[1];
+                        if (isContentHash(hash)) {
+                            bloomFilter.put(hash);
+                            loaded++;
+                        }
+                    }
+                } while (!rows.isEmpty());
+                bloomReady = true;
+                log.info("内容哈希布隆过滤器加载完成: {}条", loaded);
+            } catch (Exception e) {
+                log.error("内容哈希布隆过滤器加载失败, 秒传将直接查询数据库: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 哈希是否可能已存在（false 表示一定不存在）
+     */
+    public boolean mightContain(String hash) {
+        return !bloomReady || bloomFilter.mightContain(hash);
+    }
+
+    public void register(String hash) {
+        if (bloomFilter != null && isContentHash(hash)) {
+            bloomFilter.put(hash);
+        }
+    }
+
+    /**
+     * 是否为合法的 SHA-256 十六进制内容哈希
+     */
+    public static boolean isContentHash(String hash) {
+        return hash != null && HASH_PATTERN.matcher(hash).matches();
+    }
+
+    /**
+     * 分片写入后推进增量摘要: 提交到哈希线程池按顺序消费已连续到达的分片（刚写入的数据通常仍在页缓存中）, 不占用上传请求线程
+     * 每个会话最多排队一个推进任务; 线程池队列已满时跳过, 未纳入摘要的数据由合并时补读
+     */
+    public void onChunkReceived(UploadSession session) {
+        DigestState state = digestStates.computeIfAbsent(session.getId(), id -> new DigestState(newDigest()));
+        if (!state.queued.compareAndSet(false, true)) {
+            return;
+        }
+        // 队列已满时 CallerRunsPolicy 会在请求线程上执行, 此处直接跳过
+        if (fileHashTaskExecutor.getQueueSize() >= fileHashTaskExecutor.getQueueCapacity()) {
+            state.queued.set(false);
+            log.debug("哈希线程池繁忙, 跳过增量计算: session={}", session.getId());
+            return;
+        }
+        try {
+            fileHashTaskExecutor.execute(() -> advanceDigest(session, state));
+        } catch (TaskRejectedException e) {
+            state.queued.set(false);
+            log.debug("增量计算任务被拒绝: session={}, error={}", session.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按顺序消费已连续到达的分片; 其他线程正在推进时直接返回, 由其循环顺带处理新分片
+     */
+    private void advanceDigest(UploadSession session, DigestState state) {
+        // 先清除排队标记, 推进过程中到达的分片可再次提交任务
+        state.queued.set(false);
+        if (!state.lock.tryLock()) {
+            return;
+        }
+        try {
+            // 会话已完成摘要或已丢弃时不再读取(分片可能已被清理)
+            if (digestStates.get(session.getId()) != state) {
+                return;
+            }
+            while (state.nextChunk < session.getTotalChunks()) {
+                boolean received;
+                synchronized (session) {
+                    received = session.getChunkBitmap().get(state.nextChunk);
+                }
+                if (!received) {
+                    break;
+                }
+                long offset = state.nextChunk * session.getChunkSize();
+                long length = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+                if (UploadSessionServiceImpl.UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+                    updateDigest(state.digest, uploadSessionService.getTargetPath(session), offset, length, null);
+                } else {
+                    updateDigest(state.digest, uploadSessionService.getChunkPath(session, state.nextChunk), 0,
+                            length, null);
+                }
+                state.hashedBytes += length;
+                state.nextChunk++;
+            }
+        } catch (IOException e) {
+            // 放弃增量状态, 合并时对完整文件重新计算
+            log.warn("增量计算文件哈希失败: session={}, error={}", session.getId(), e.getMessage());
+            digestStates.remove(session.getId(), state);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * 完成上传会话的摘要计算, 只需补读尚未纳入摘要的尾部数据
+     *
+     * @param finalFile 合并后的最终文件
+     * @return SHA-256 十六进制字符串
+     */
+    public String finishDigest(UploadSession session, Path finalFile) throws IOException {
+        DigestState state = digestStates.remove(session.getId());
+        if (state == null) {
+            state = new DigestState(newDigest());
+        }
+        state.lock.lock();
+        try {
+            long remaining = Files.size(finalFile) - state.hashedBytes;
+            if (remaining > 0) {
+                log.debug("补充计算文件哈希: session={}, 剩余{}字节", session.getId(), remaining);
+                updateDigest(state.digest, finalFile, state.hashedBytes, remaining, null);
+            }
+            return FileUtil.bytesToHex(state.digest.digest());
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃会话的增量摘要状态（会话取消或过期时调用）
+     */
+    public void discard(String sessionId) {
+        digestStates.remove(sessionId);
+    }
+
+    /**
+     * 计算整个文件的 SHA-256
+     *
+     * @param limiter 读取限速器, 可为 null
+     */
+    public String hashFile(Path file, RateLimiter limiter) throws IOException {
+        MessageDigest digest = newDigest();
+        updateDigest(digest, file, 0, Files.size(file), limiter);
+        return FileUtil.bytesToHex(digest.digest());
+    }
+
+    /**
+     * 定时回填仍使用 temp_ 临时哈希的历史文件, 多线程并行读取并整体限速
+     * 调度线程只负责提交首批任务, 后续批次在上一批完成后接续提交, 不阻塞调度线程
+     */
+    @Scheduled(initialDelayString = "${file.hash.backfill.initial-delay:60000}",
+            fixedDelayString = "${file.hash.backfill.interval:600000}")
+    public void backfillTempHashes() {
+        if (!backfillEnabled) {
+            return;
+        }
+        if (!backfillRunning.compareAndSet(false, true)) {
+            log.debug("上一轮文件哈希回填尚未结束, 跳过本轮");
+            return;
+        }
+        try {
+            backfillBatch(0, RateLimiter.create(Math.max(1, backfillRate.toBytes())), new AtomicInteger());
+        } catch (Exception e) {
+            backfillRunning.set(false);
+            log.error("文件哈希回填失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 回填 lastId 之后的一批文件, 全部完成后接续下一批; 没有更多文件时结束本轮
+     */
+    private void backfillBatch(long lastId, RateLimiter limiter, AtomicInteger updated) {
+        List<Object[]> batch = fileRepository.findTempHashFilesAfter(TEMP_HASH_PREFIX, lastId,
+                PageRequest.of(0, backfillBatchSize));
+        if (batch.isEmpty()) {
+            finishBackfill(updated);
+            return;
+        }
+        long nextId = (Long) batch.get(batch.size() - 1)[0];
+        boolean hasMore = batch.size() == backfillBatchSize;
+
+        CompletableFuture<?>[] futures = batch.stream()
+                .map(row -> CompletableFuture.runAsync(() -> {
+                    Long fileId = (Long) row[0];
+                    Path path = Path.of((String) row[1]);
+                    try {
+                        if (!Files.isRegularFile(path)) {
+                            return;
+                        }
+                        String hash = hashFile(path, limiter);
+                        fileRepository.updateHash(fileId, hash);
+                        register(hash);
+                        updated.incrementAndGet();
+                    } catch (Exception e) {
+                        log.warn("回填文件哈希失败: fileId={}, error={}", fileId, e.getMessage());
+                    }
+                }, fileHashTaskExecutor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).whenComplete((result, error) -> {
+            try {
+                if (hasMore) {
+                    backfillBatch(nextId, limiter, updated);
+                } else {
+                    finishBackfill(updated);
+                }
+            } catch (Exception e) {
+                backfillRunning.set(false);
+                log.error("文件哈希回填失败: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    private void finishBackfill(AtomicInteger updated) {
+        backfillRunning.set(false);
+        if (updated.get() > 0) {
+            log.info("历史文件哈希回填完成: {}个文件", updated.get());
+        }
+    }
+
+    private void updateDigest(MessageDigest digest, Path file, long offset, long length, RateLimiter limiter)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, Math.max(length, 1)));
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("文件提前结束: " + file.getFileName());
+                }
+                if (limiter != null && read > 0) {
+                    limiter.acquire(read);
+                }
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class DigestState {
+        private final MessageDigest digest;
+        private final ReentrantLock lock = new ReentrantLock();
+        // 是否已有排队中的推进任务
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private int nextChunk;
+        private long hashedBytes;
+
+        private DigestState(MessageDigest digest) {
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cn.lmao.cloudown.service;
+
+import java.io.IOException;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.enums.UserRole;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public interface DownloadService {
+
+    /**
+     * 按 HTTP Range(RFC 7233) 输出文件: 支持单/多区间、If-Range, 返回 200/206/416
+     * 以内容哈希为强 ETag、更新时间为 Last-Modified, 条件请求命中时直接返回 304, 不读取文件
+     * 按用户角色及全局带宽限速, 限速时以异步方式写出, 方法返回时响应可能尚未结束
+     *
+     * @param userId 下载用户ID, 用于按用户限速
+     * @param role   下载用户角色, 决定限速档位
+     * @param inline true 时以 inline 方式展示(如视频在线播放)
+     */
+    void writeFile(HttpServletRequest request, HttpServletResponse response, Long userId, UserRole role, File file,
+            String fileName, boolean inline) throws IOException;
+}
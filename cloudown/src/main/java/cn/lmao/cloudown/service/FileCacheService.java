@@ -0,0 +1,14 @@
+package cn.lmao.cloudown.service;
+
+import java.nio.ByteBuffer;
+
+import cn.lmao.cloudown.model.entity.File;
+
+public interface FileCacheService {
+
+    // 返回文件内容的只读视图(堆外内存), 未缓存且未被准入时返回 null
+    ByteBuffer get(File file);
+
+    // 物理文件被删除、覆盖或对应记录变更时移除缓存
+    void invalidate(String path);
+}
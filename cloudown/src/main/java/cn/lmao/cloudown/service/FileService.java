@@ -1,25 +1,46 @@
 package cn.lmao.cloudown.service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.core.io.Resource;
 
+import cn.lmao.cloudown.model.dto.BatchUploadItem;
+import cn.lmao.cloudown.model.dto.BatchUploadResult;
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.dto.FilePage;
+import cn.lmao.cloudown.model.dto.MergeJob;
 import cn.lmao.cloudown.model.entity.File;
 import cn.lmao.cloudown.model.entity.User;
 
 public interface FileService {
 
-    // 上传文件
-    void uploadFile(User user, String filename, MultipartFile file, int chunkIndex, int totalChunks) throws IOException, NoSuchAlgorithmException;
+    // 上传文件, contentEncoding 非空时 file 为压缩数据, length 为解压后的分片大小
+    void uploadFile(User user, String sessionId, MultipartFile file, int chunkIndex, String chunkHash,
+            String contentEncoding, Long length) throws IOException, NoSuchAlgorithmException;
 
-    // 合并文件
-    void mergeFile(User user, String fileName, Long size, int chunksCount, String path) throws IOException, NoSuchAlgorithmException;
+    // 上传分片(原始请求体), 数据直接从输入流写入目标文件; 支持 gzip/deflate 压缩的请求体, length 为解压后的大小
+    void uploadChunkStream(User user, String sessionId, InputStream inputStream, int chunkIndex, long offset,
+            long length, String chunkHash, String contentEncoding) throws IOException, NoSuchAlgorithmException;
 
-    // 下载文件
-    Resource downloadFile(User user, Long fileId, String fileName) throws IOException;
+    // 批量上传: 一次请求携带多个分片或完整小文件, 逐项返回结果
+    List<BatchUploadResult> uploadBatch(User user, List<BatchUploadItem> items, Map<String, MultipartFile> parts)
+            throws IOException;
+
+    // 取消上传, 释放预留容量并清理已上传的分片
+    void abortUpload(User user, String sessionId);
+
+    // 秒传: 内容哈希已存在时直接创建文件记录, 不存在返回null
+    File instantUpload(User user, String contentHash, long size, String fileName, String path);
+
+    // 合并文件, 合并进度写入 job
+    File mergeFile(User user, String sessionId, String path, String merkleRoot, MergeJob job) throws IOException, NoSuchAlgorithmException;
+
+    // 获取待下载的文件记录, 校验物理文件存在
+    File downloadFile(User user, Long fileId, String fileName) throws IOException;
 
     // 创建文件夹
     void createFolder(User user, String folderName, String path) throws IOException;
@@ -30,8 +51,23 @@ public interface FileService {
     // 删除文件
     void deleteFile(User user, Long fileId);
 
+    // 批量删除(移入回收站), 文件夹连同其内容; 在一个事务中完成, 返回受影响的节点数
+    int deleteFiles(User user, List<Long> fileIds);
+
+    // 批量从回收站还原, 已删除的上级目录一并还原; 返回还原的节点数
+    int restoreFiles(User user, List<Long> fileIds);
+
+    // 批量移动文件或文件夹到目标目录
+    void moveFiles(User user, List<Long> fileIds, String path);
+
+    // 文件大小, 文件夹为其中全部有效文件的总大小
+    long getFileSize(User user, Long fileId);
+
     // 获取文件列表
-    List<File> getFileList(User user, String path, String category, String sort);
+    List<FileItem> getFileList(User user, String path, String category, String sort);
+
+    // 游标分页获取文件列表, cursor 为上一页返回的 nextCursor, 首页传 null
+    FilePage<FileItem> getFilePage(User user, String path, String category, String sort, String cursor, int size);
 
     //获取文件信息
     File getFile(Long fileId);
@@ -40,6 +76,6 @@ public interface FileService {
 
     Boolean updateFileName(Long fileId, String newFileName);
 
-    List<File> searchFiles(User user, String searchQuery);
+    List<FileItem> searchFiles(User user, String searchQuery);
 }
 
@@ -0,0 +1,167 @@
+package cn.lmao.cloudown.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.repository.FileClosureRepository;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 目录树迁移
+ * 旧数据只有 relativePath, 启动时按用户由路径推导 parentId 并补齐闭包表; 同一目录下重名的有效文件追加序号以满足唯一约束
+ * parentId 最后写入, 中途失败时下次启动重新迁移该用户
+ */
+@Service
+@RequiredArgsConstructor
+public class FileTreeMigrationService {
+
+    private static final String FOLDER_TYPE = "文件夹";
+    private static final int UPDATE_BATCH_SIZE = 1000;
+
+    private final FileRepository fileRepository;
+    private final FileClosureRepository fileClosureRepository;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.tree.migration.enabled:true}")
+    private boolean migrationEnabled;
+
+    private record Node(Long id, String name, String type, String relativePath, Long parentId, FileStatus status) {
+
+        boolean folder() {
+            return FOLDER_TYPE.equals(type);
+        }
+    }
+
+    /**
+     * 同步执行: 迁移完成前旧数据在目录列表中不可见
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!migrationEnabled) {
+            return;
+        }
+        List<Long> userIds = fileRepository.findUserIdsWithoutParent();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        long migrated = 0;
+        for (Long userId : userIds) {
+            try {
+                migrated += migrateUser(userId);
+            } catch (Exception e) {
+                log.error("迁移用户目录树失败: userId={}, error={}", userId, e.getMessage(), e);
+            }
+        }
+        log.info("目录树迁移完成: 用户数={}, 节点数={}, 耗时={}ms", userIds.size(), migrated,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private int migrateUser(Long userId) {
+        List<Node> nodes = fileRepository.findTreeRows(userId).stream()
+                .map(row -> new Node((Long) row[0], (String) row[1], (String) row[2], (String) row[3],
+                        (Long) row[4], (FileStatus) row[5]))
+                .toList();
+
+        // 1. 目录路径 -> 目录ID, 同一路径有多个目录时优先取有效的
+        Map<String, Long> folders = new HashMap<>();
+        nodes.stream().filter(n -> n.folder() && n.status() == FileStatus.ACTIVE)
+                .forEach(n -> folders.putIfAbsent(n.relativePath() + n.name() + "/", n.id()));
+        nodes.stream().filter(n -> n.folder() && n.status() != FileStatus.ACTIVE)
+                .forEach(n -> folders.putIfAbsent(n.relativePath() + n.name() + "/", n.id()));
+
+        // 2. 推导 parentId; 找不到上级目录(如旧版本重命名目录后遗留)的节点挂到根目录
+        Map<Long, Long> parents = new HashMap<>();
+        List<Node> pending = new ArrayList<>();
+        for (Node node : nodes) {
+            Long parentId = node.parentId();
+            if (parentId == null) {
+                parentId = File.ROOT_PATH.equals(node.relativePath()) ? null : folders.get(node.relativePath());
+                parentId = parentId == null || parentId.equals(node.id()) ? File.ROOT_ID : parentId;
+                pending.add(node);
+            }
+            parents.put(node.id(), parentId);
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        // 3. 按层级写入闭包表, 上级目录先于子节点
+        Map<Long, Integer> depths = new HashMap<>();
+        pending = new ArrayList<>(pending);
+        pending.sort(Comparator.comparingInt(n -> depthOf(n.id(), parents, depths, nodes.size())));
+        List<Long> pendingIds = pending.stream().map(Node::id).toList();
+        Lists.partition(pendingIds, UPDATE_BATCH_SIZE).forEach(fileClosureRepository::deleteByDescendantIds);
+        for (Node node : pending) {
+            fileClosureRepository.insertNode(node.id(), parents.get(node.id()));
+        }
+
+        // 4. 同一目录下重名的有效节点追加序号, 然后标记为有效
+        Set<String> taken = new HashSet<>();
+        nodes.stream().filter(n -> n.parentId() != null && n.status() == FileStatus.ACTIVE)
+                .forEach(n -> taken.add(n.parentId() + "/" + n.name()));
+        List<Long> live = new ArrayList<>();
+        for (Node node : pending) {
+            if (node.status() != FileStatus.ACTIVE) {
+                continue;
+            }
+            Long parentId = parents.get(node.id());
+            String name = node.name();
+            for (int n = 1; !taken.add(parentId + "/" + name); n++) {
+                name = numbered(node.name(), n);
+            }
+            if (!name.equals(node.name())) {
+                fileRepository.updateName(node.id(), name);
+                log.info("迁移时重名文件已改名: fileId={}, {} -> {}", node.id(), node.name(), name);
+            }
+            live.add(node.id());
+        }
+        Lists.partition(live, UPDATE_BATCH_SIZE).forEach(fileRepository::markLive);
+
+        // 5. 写入 parentId, 完成该用户的迁移
+        Map<Long, List<Long>> byParent = new HashMap<>();
+        for (Node node : pending) {
+            byParent.computeIfAbsent(parents.get(node.id()), p -> new ArrayList<>()).add(node.id());
+        }
+        byParent.forEach((parentId, ids) -> Lists.partition(ids, UPDATE_BATCH_SIZE)
+                .forEach(batch -> fileRepository.updateParent(batch, parentId)));
+        log.debug("用户目录树迁移完成: userId={}, 节点数={}", userId, pending.size());
+        return pending.size();
+    }
+
+    private int depthOf(Long id, Map<Long, Long> parents, Map<Long, Integer> depths, int maxDepth) {
+        Integer known = depths.get(id);
+        if (known != null) {
+            return known;
+        }
+        int depth = 0;
+        for (Long current = parents.get(id); current != null && current != File.ROOT_ID && depth < maxDepth;
+                current = parents.get(current)) {
+            depth++;
+        }
+        depths.put(id, depth);
+        return depth;
+    }
+
+    private static String numbered(String name, int n) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) + " (" + n + ")" + name.substring(dot) : name + " (" + n + ")";
+    }
+}
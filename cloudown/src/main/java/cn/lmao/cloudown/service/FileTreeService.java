@@ -0,0 +1,35 @@
+package cn.lmao.cloudown.service;
+
+import java.util.List;
+
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.User;
+
+public interface FileTreeService {
+
+    // 解析目录路径(如 my-files/a/b/)为目录ID, 根目录为 File.ROOT_ID; 目录不存在时抛出 FILE_PATH_INVALID
+    Long resolveFolder(User user, String path);
+
+    // 在父目录下保存新节点并写入闭包表; renameOnConflict 为 true 时同名自动追加序号, 否则抛出 FILE_EXISTS
+    File create(File file, Long parentId, boolean renameOnConflict);
+
+    // 重命名, 子节点不受影响; 同目录下重名时抛出 FILE_EXISTS
+    void rename(File file, String newName);
+
+    // 批量操作在同一事务中以集合语句执行, 选中项位于另一选中项子树内时随上级一起处理
+
+    // 将节点(含子树)移动到目标目录
+    void move(User user, List<Long> fileIds, Long targetFolderId);
+
+    // 将节点及其子树移入回收站, 返回受影响节点的 (id, path)
+    List<Object[]> trash(User user, List<Long> fileIds);
+
+    // 从回收站还原节点及其子树中同一次删除的节点, 已删除的上级目录一并还原; 返回还原的节点数
+    int restore(User user, List<Long> fileIds);
+
+    // 节点及其子树中有效文件的总大小
+    long subtreeSize(User user, Long fileId);
+
+    // 目录下的全部有效节点(不含目录本身), 上级目录在前
+    List<File> listDescendants(File folder);
+}
@@ -0,0 +1,13 @@
+package cn.lmao.cloudown.service;
+
+import cn.lmao.cloudown.model.dto.MergeJob;
+import cn.lmao.cloudown.model.entity.User;
+
+public interface MergeJobService {
+
+    // 提交合并任务, 同一会话已有进行中的任务时直接返回该任务
+    MergeJob submit(User user, String sessionId, String path, String merkleRoot);
+
+    // 查询合并任务进度
+    MergeJob getJob(Long userId, String jobId);
+}
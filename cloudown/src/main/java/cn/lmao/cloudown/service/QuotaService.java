@@ -0,0 +1,19 @@
+package cn.lmao.cloudown.service;
+
+public interface QuotaService {
+
+    // 预留容量(上传会话开始时), 余量不足时抛出 STORAGE_QUOTA_EXHAUSTED
+    void reserve(Long userId, long bytes);
+
+    // 预留容量转为已用容量(合并完成时)
+    void commit(Long userId, long bytes);
+
+    // 释放预留容量(会话中止或过期时)
+    void release(Long userId, long bytes);
+
+    // 直接占用容量(秒传等无预留的场景), 余量不足时抛出 STORAGE_QUOTA_EXHAUSTED
+    void charge(Long userId, long bytes);
+
+    // 归还已用容量
+    void refund(Long userId, long bytes);
+}
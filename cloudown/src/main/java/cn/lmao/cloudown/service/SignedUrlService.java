@@ -0,0 +1,18 @@
+package cn.lmao.cloudown.service;
+
+import cn.lmao.cloudown.model.dto.SignedUrl;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.UserRole;
+
+public interface SignedUrlService {
+
+    // 为用户自己的文件生成带 HMAC 签名的限时下载链接, 无需 Authorization 头即可访问
+    SignedUrl createUrl(User user, File file, boolean inline);
+
+    // 校验签名与有效期并返回文件; 不查询用户, 文件元数据短时缓存
+    File resolve(Long fileId, Long userId, UserRole role, long expires, String signature);
+
+    // 文件删除或变更后清除元数据缓存
+    void evict(Long fileId);
+}
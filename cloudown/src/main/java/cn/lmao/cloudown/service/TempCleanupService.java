@@ -0,0 +1,271 @@
+package cn.lmao.cloudown.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import cn.lmao.cloudown.model.entity.UploadSession;
+import cn.lmao.cloudown.model.entity.UploadSession.SessionStatus;
+import cn.lmao.cloudown.repository.UploadSessionRepository;
+import cn.lmao.cloudown.service.impl.UploadSessionServiceImpl;
+import cn.lmao.cloudown.util.FileUtil;
+import cn.lmao.cloudown.util.LogUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 临时文件清理服务
+ * 1. 过期长时间无进展的上传会话, 释放预留容量并删除其数据(含合并中断留下的最终文件)
+ * 2. 遍历临时目录, 删除不属于任何进行中会话的分片、直写文件及合并残留
+ * 删除操作整体限速, 避免清理时抢占上传的磁盘带宽
+ */
+@Service
+@RequiredArgsConstructor
+public class TempCleanupService {
+
+    // 会话产生的文件: <sessionId>.<idx>.part | <sessionId>.uploading | <sessionId>.tmp.<ts>
+    private static final Pattern SESSION_FILE_PATTERN = Pattern.compile("^([0-9a-f]{32})\\..+$");
+    // multipart 解析时 Tomcat 落盘的临时文件
+    private static final Pattern MULTIPART_SPOOL_PATTERN = Pattern.compile("^upload_.+\\.tmp$");
+    private static final String UPLOAD_DIR_GLOB = "*{.uploading,.tmp.*}";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionService uploadSessionService;
+    private final ContentHashService contentHashService;
+    private final FileUtil fileUtil;
+    private final MeterRegistry meterRegistry;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.cleanup.enabled:true}")
+    private boolean cleanupEnabled;
+
+    // 会话超过该时长无新分片即视为放弃
+    @Value("${file.cleanup.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    @Value("${file.cleanup.batch-size:200}")
+    private int cleanupBatchSize;
+
+    // 每秒删除文件数上限
+    @Value("${file.cleanup.delete-rate:200}")
+    private double deleteRate;
+
+    private final AtomicLong tempDirBytes = new AtomicLong();
+    private Counter reclaimedBytes;
+    private Counter reclaimedFiles;
+    private Counter expiredSessions;
+
+    @PostConstruct
+    void registerMetrics() {
+        reclaimedBytes = Counter.builder("cloudown.cleanup.reclaimed.bytes")
+                .description("清理回收的字节数").baseUnit("bytes").register(meterRegistry);
+        reclaimedFiles = Counter.builder("cloudown.cleanup.reclaimed.files")
+                .description("清理删除的文件数").register(meterRegistry);
+        expiredSessions = Counter.builder("cloudown.cleanup.expired.sessions")
+                .description("过期的上传会话数").register(meterRegistry);
+        Gauge.builder("cloudown.temp.dir.size", tempDirBytes, AtomicLong::get)
+                .description("临时目录占用的字节数(最近一次清理时统计)").baseUnit("bytes").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${file.cleanup.initial-delay:120000}",
+            fixedDelayString = "${file.cleanup.interval:1800000}")
+    public void sweep() {
+        if (!cleanupEnabled) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        RateLimiter limiter = RateLimiter.create(Math.max(1, deleteRate));
+        Instant deadline = Instant.now().minus(sessionTtl);
+
+        int sessions = expireSessions(deadline, limiter);
+        int orphans = 0;
+        try {
+            orphans += sweepTempDir(deadline, limiter);
+            orphans += sweepUploadDir(deadline, limiter);
+        } catch (IOException e) {
+            log.warn("遍历临时目录失败: {}", e.getMessage());
+        }
+
+        if (sessions > 0 || orphans > 0) {
+            log.info("临时文件清理完成: 过期会话{}个, 孤立文件{}个, 临时目录剩余{}字节 (耗时: {}ms)",
+                    sessions, orphans, tempDirBytes.get(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * 过期超时会话, 按ID游标分批处理
+     */
+    private int expireSessions(Instant deadline, RateLimiter limiter) {
+        LocalDateTime deadlineTime = LocalDateTime.ofInstant(deadline, ZoneId.systemDefault());
+        int expired = 0;
+        String lastId = "";
+        List<UploadSession> batch;
+        do {
+            batch = uploadSessionRepository.findByStatusAndUpdateTimeBeforeAndIdGreaterThanOrderByIdAsc(
+                    SessionStatus.UPLOADING, deadlineTime, lastId, PageRequest.of(0, cleanupBatchSize));
+            for (UploadSession session : batch) {
+                lastId = session.getId();
+                try {
+                    limiter.acquire(UploadSessionServiceImpl.UPLOAD_MODE_DIRECT.equals(session.getUploadMode())
+                            ? 1 : Math.max(1, session.getChunkBitmap().cardinality()));
+                    long bytes = uploadSessionService.abortSession(session, SessionStatus.EXPIRED);
+                    contentHashService.discard(session.getId());
+                    reclaimedBytes.increment(bytes);
+                    expiredSessions.increment();
+                    expired++;
+                } catch (Exception e) {
+                    log.warn("过期上传会话失败: {}, error={}", session.getId(), e.getMessage());
+                }
+            }
+        } while (batch.size() == cleanupBatchSize);
+        return expired;
+    }
+
+    /**
+     * 遍历临时目录: 统计占用, 删除超时且不属于进行中会话的分片及 multipart 残留
+     */
+    private int sweepTempDir(Instant deadline, RateLimiter limiter) throws IOException {
+        Path tempRoot = fileUtil.getTempRoot();
+        if (!Files.isDirectory(tempRoot)) {
+            tempDirBytes.set(0);
+            return 0;
+        }
+
+        AtomicLong totalBytes = new AtomicLong();
+        Map<Path, Long> candidates = new HashMap<>();
+        Map<Path, Long> spoolFiles = new HashMap<>();
+        Files.walkFileTree(tempRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                totalBytes.addAndGet(attrs.size());
+                if (attrs.lastModifiedTime().toInstant().isBefore(deadline)) {
+                    String name = file.getFileName().toString();
+                    if (MULTIPART_SPOOL_PATTERN.matcher(name).matches()) {
+                        spoolFiles.put(file, attrs.size());
+                    } else if (SESSION_FILE_PATTERN.matcher(name).matches()) {
+                        candidates.put(file, attrs.size());
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // 遍历期间被其他线程删除的文件直接跳过
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        int deleted = 0;
+        long remaining = totalBytes.get();
+        for (Map.Entry<Path, Long> entry : spoolFiles.entrySet()) {
+            if (delete(entry.getKey(), entry.getValue(), limiter)) {
+                remaining -= entry.getValue();
+                deleted++;
+            }
+        }
+        deleted += deleteOrphans(candidates, limiter);
+        remaining -= candidates.entrySet().stream()
+                .filter(entry -> !Files.exists(entry.getKey()))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        tempDirBytes.set(Math.max(0, remaining));
+        return deleted;
+    }
+
+    /**
+     * 上传目录下仅检查直写会话文件(.uploading)与合并残留(.tmp.*), 不遍历用户文件
+     */
+    private int sweepUploadDir(Instant deadline, RateLimiter limiter) throws IOException {
+        Path uploadRoot = fileUtil.getUploadRoot();
+        if (!Files.isDirectory(uploadRoot)) {
+            return 0;
+        }
+        Map<Path, Long> candidates = new HashMap<>();
+        try (DirectoryStream<Path> userDirs = Files.newDirectoryStream(uploadRoot, Files::isDirectory)) {
+            for (Path userDir : userDirs) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(userDir, UPLOAD_DIR_GLOB)) {
+                    for (Path file : files) {
+                        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attrs.isRegularFile() && attrs.lastModifiedTime().toInstant().isBefore(deadline)
+                                && SESSION_FILE_PATTERN.matcher(file.getFileName().toString()).matches()) {
+                            candidates.put(file, attrs.size());
+                        }
+                    }
+                }
+            }
+        }
+        return deleteOrphans(candidates, limiter);
+    }
+
+    /**
+     * 分批查询候选文件所属会话, 仍在上传中的会话文件保留, 其余删除
+     */
+    private int deleteOrphans(Map<Path, Long> candidates, RateLimiter limiter) {
+        int deleted = 0;
+        List<Path> files = new ArrayList<>(candidates.keySet());
+        for (int from = 0; from < files.size(); from += cleanupBatchSize) {
+            List<Path> batch = files.subList(from, Math.min(files.size(), from + cleanupBatchSize));
+            Set<String> sessionIds = new HashSet<>();
+            for (Path file : batch) {
+                sessionIds.add(sessionIdOf(file));
+            }
+            Set<String> active = new HashSet<>(
+                    uploadSessionRepository.findIdsByStatus(sessionIds, SessionStatus.UPLOADING));
+            for (Path file : batch) {
+                if (!active.contains(sessionIdOf(file)) && delete(file, candidates.get(file), limiter)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private boolean delete(Path file, long size, RateLimiter limiter) {
+        limiter.acquire();
+        try {
+            if (Files.deleteIfExists(file)) {
+                reclaimedBytes.increment(size);
+                reclaimedFiles.increment();
+                log.debug("已删除孤立临时文件: {}", file);
+                return true;
+            }
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}, error={}", file, e.getMessage());
+        }
+        return false;
+    }
+
+    private static String sessionIdOf(Path file) {
+        Matcher matcher = SESSION_FILE_PATTERN.matcher(file.getFileName().toString());
+        return matcher.matches() ? matcher.group(1) : "";
+    }
+}
@@ -0,0 +1,60 @@
+package cn.lmao.cloudown.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import cn.lmao.cloudown.model.entity.UploadSession;
+import cn.lmao.cloudown.model.entity.User;
+
+public interface UploadSessionService {
+
+    // 创建或恢复上传会话
+    UploadSession openSession(User user, String quickHash, String fileName, long totalSize, long chunkSize,
+            int totalChunks) throws IOException;
+
+    // 查找同一文件可续传的会话(不限分片大小), 不存在返回null
+    UploadSession findResumableSession(Long userId, String quickHash, String fileName, long totalSize);
+
+    // 获取进行中的上传会话
+    UploadSession getActiveSession(Long userId, String sessionId);
+
+    // 标记分片已接收并记录分片摘要
+    void markChunkReceived(UploadSession session, int chunkIndex, byte[] digest, long size);
+
+    // 将分片恢复为未接收(清除位图、摘要及分片记录), 分片数据丢失时由客户端重新上传
+    void resetChunks(UploadSession session, List<Integer> chunkIndexes);
+
+    // 已接收分片的摘要, 分片尚未接收时返回null
+    byte[] getChunkDigest(UploadSession session, int chunkIndex);
+
+    // 根据已记录的分片摘要计算 Merkle 根, 存在缺失摘要时返回null
+    String computeMerkleRoot(UploadSession session);
+
+    // 获取已接收的分片索引
+    int[] getReceivedChunks(UploadSession session);
+
+    // 是否所有分片都已接收
+    boolean isAllChunksReceived(UploadSession session);
+
+    // 结束上传会话
+    void completeSession(UploadSession session);
+
+    // 取走会话的容量预留并返回预留字节数, 已取走或未预留时返回0
+    long takeReservation(UploadSession session);
+
+    // 中止上传会话: 释放容量预留并删除已上传的临时数据, 返回回收的字节数
+    long abortSession(UploadSession session, UploadSession.SessionStatus status);
+
+    // 分片模式下的临时分片路径
+    Path getChunkPath(UploadSession session, int chunkIndex) throws IOException;
+
+    // 分片接收时的暂存文件路径, 校验通过后才移入分片文件或写入目标文件
+    Path getScratchPath(UploadSession session, int chunkIndex) throws IOException;
+
+    // 合并完成后的最终文件路径: 用户目录下 <sessionId>_<文件名>, 同名文件(不同目录)的上传互不覆盖
+    Path getFinalPath(UploadSession session) throws IOException;
+
+    // 直写模式下的目标文件路径
+    Path getTargetPath(UploadSession session) throws IOException;
+}
@@ -0,0 +1,15 @@
+package cn.lmao.cloudown.service;
+
+import cn.lmao.cloudown.model.dto.UploadPlan;
+
+public interface UploadTuningService {
+
+    // 根据文件大小、服务端负载及用户历史吞吐量给出分片大小与并发数
+    UploadPlan plan(Long userId, long fileSize, boolean multipart);
+
+    // 分片开始接收
+    void chunkStarted();
+
+    // 分片接收结束, 记录本次吞吐量
+    void chunkFinished(Long userId, long bytes, long elapsedNanos, boolean success);
+}
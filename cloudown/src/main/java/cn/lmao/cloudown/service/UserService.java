@@ -12,6 +12,9 @@ public interface UserService {
     // 获取用户信息
     User getUserInfo(String email);
 
+    // 登录成功后记录最后登录时间
+    void recordLogin(String email);
+
     // 更新用户信息
     void updateUserInfo(User user);
 
@@ -0,0 +1,280 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.service.ArchiveService;
+import cn.lmao.cloudown.service.FileTreeService;
+import cn.lmao.cloudown.util.FileTypeChecker;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * ZIP 流式打包
+ * 小文件由预读线程池提前整体读入内存, 与当前条目的压缩写出重叠; 大文件在写出时顺序读取
+ * 图片/音视频/压缩包等已压缩的文件不再压缩: 预读的小文件以 STORED 写入(预读时计算CRC), 大文件以0级 DEFLATED 写入
+ */
+@Service
+@RequiredArgsConstructor
+public class ArchiveServiceImpl implements ArchiveService {
+
+    private static final String FOLDER_TYPE = "文件夹";
+
+    private final FileRepository fileRepository;
+    private final FileTreeService fileTreeService;
+    private final ThreadPoolTaskExecutor fileZipPrefetchExecutor;
+    private final Logger log = LogUtil.getLogger();
+
+    // 单个压缩包的最大条目数
+    @Value("${file.zip.max-entries:10000}")
+    private int maxEntries;
+
+    // 预读的文件数
+    @Value("${file.zip.prefetch-files:4}")
+    private int prefetchFiles;
+
+    // 不超过该大小的文件才预读到内存
+    @Value("${file.zip.prefetch-max-size:4MB}")
+    private DataSize prefetchMaxSize;
+
+    @Value("${file.zip.level:6}")
+    private int compressionLevel;
+
+    /**
+     * 压缩包条目, file 为null时表示目录
+     */
+    private record ArchiveEntry(String name, File file) {
+    }
+
+    private record Prefetched(byte[] data, long crc) {
+    }
+
+    @Override
+    public String archiveName(User user, List<Long> fileIds) {
+        List<File> selected = loadSelection(user, fileIds);
+        if (selected.size() == 1 && FOLDER_TYPE.equals(selected.get(0).getType())) {
+            return selected.get(0).getName() + ".zip";
+        }
+        return "cloudown_" + System.currentTimeMillis() + ".zip";
+    }
+
+    @Override
+    public void writeZip(User user, List<Long> fileIds, OutputStream outputStream) throws IOException {
+        List<ArchiveEntry> entries = resolveEntries(loadSelection(user, fileIds));
+        log.info("开始打包下载: userId={}, 条目数={}", user.getId(), entries.size());
+        long startTime = System.currentTimeMillis();
+
+        Deque<CompletableFuture<Prefetched>> window = new ArrayDeque<>();
+        Map<Integer, CompletableFuture<Prefetched>> pending = new HashMap<>();
+        int nextPrefetch = 0;
+        // ZipOutputStream 自带缓冲, 不关闭底层响应流, 由容器负责
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                // 保持预读窗口: 提交后续条目中的小文件
+                while (nextPrefetch < entries.size() && window.size() < prefetchFiles) {
+                    File candidate = entries.get(nextPrefetch).file();
+                    if (candidate != null && candidate.getSize() <= prefetchMaxSize.toBytes()) {
+                        CompletableFuture<Prefetched> future = prefetch(candidate);
+                        window.add(future);
+                        pending.put(nextPrefetch, future);
+                    }
+                    nextPrefetch++;
+                }
+
+                ArchiveEntry entry = entries.get(i);
+                CompletableFuture<Prefetched> prefetched = pending.remove(i);
+                if (prefetched != null) {
+                    window.remove(prefetched);
+                }
+                try {
+                    writeEntry(zip, entry, prefetched);
+                } catch (NoSuchFileException e) {
+                    // 物理文件缺失时跳过该条目, 已写出的内容无法撤回
+                    log.warn("打包时文件不存在, 已跳过: {}", entry.name());
+                }
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            window.forEach(future -> future.cancel(false));
+        }
+        log.info("打包下载完成: userId={}, 条目数={}, 耗时={}ms", user.getId(), entries.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private CompletableFuture<Prefetched> prefetch(File file) {
+        boolean stored = FileTypeChecker.isAlreadyCompressed(file.getName());
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                byte[] data = Files.readAllBytes(Path.of(file.getPath()));
+                long crc = 0;
+                if (stored) {
+                    CRC32 crc32 = new CRC32();
+                    crc32.update(data);
+                    crc = crc32.getValue();
+                }
+                return new Prefetched(data, crc);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, fileZipPrefetchExecutor);
+    }
+
+    private void writeEntry(ZipOutputStream zip, ArchiveEntry entry, CompletableFuture<Prefetched> prefetched)
+            throws IOException {
+        ZipEntry zipEntry = new ZipEntry(entry.name());
+        File file = entry.file();
+        if (file == null) {
+            zip.putNextEntry(zipEntry);
+            zip.closeEntry();
+            return;
+        }
+        zipEntry.setTime(file.getUpdateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        boolean compressed = FileTypeChecker.isAlreadyCompressed(file.getName());
+
+        if (prefetched != null) {
+            Prefetched data = awaitPrefetch(prefetched);
+            if (compressed) {
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(data.data().length);
+                zipEntry.setCompressedSize(data.data().length);
+                zipEntry.setCrc(data.crc());
+            } else {
+                zipEntry.setMethod(ZipEntry.DEFLATED);
+                zip.setLevel(compressionLevel);
+            }
+            zip.putNextEntry(zipEntry);
+            zip.write(data.data());
+            zip.closeEntry();
+            return;
+        }
+
+        // 大文件边读边写; STORED 需预先知道CRC, 因此已压缩的大文件以0级 DEFLATED 写入, 避免额外读一遍
+        zipEntry.setMethod(ZipEntry.DEFLATED);
+        zip.setLevel(compressed ? Deflater.NO_COMPRESSION : compressionLevel);
+        try (InputStream inputStream = Files.newInputStream(Path.of(file.getPath()))) {
+            zip.putNextEntry(zipEntry);
+            inputStream.transferTo(zip);
+        }
+        zip.closeEntry();
+    }
+
+    private Prefetched awaitPrefetch(CompletableFuture<Prefetched> prefetched) throws IOException {
+        try {
+            return prefetched.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private List<File> loadSelection(User user, List<Long> fileIds) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            throw new IllegalArgumentException("未选择要下载的文件");
+        }
+        List<File> selected = fileRepository.findAllById(new HashSet<>(fileIds)).stream()
+                .filter(f -> f.getUser().getId().equals(user.getId()) && f.getStatus() == FileStatus.ACTIVE)
+                .toList();
+        if (selected.size() != new HashSet<>(fileIds).size()) {
+            throw new CustomException(ErrorOperationStatus.FILE_NOT_FOUND);
+        }
+        return selected;
+    }
+
+    /**
+     * 展开选中的文件夹, 生成条目列表; 条目名为相对所选项所在目录的路径, 同名时追加序号
+     */
+    private List<ArchiveEntry> resolveEntries(List<File> selected) {
+        Map<String, ArchiveEntry> entries = new LinkedHashMap<>();
+        for (File item : selected) {
+            if (!FOLDER_TYPE.equals(item.getType())) {
+                addEntry(entries, item.getName(), item);
+                continue;
+            }
+            String rootName = uniqueName(entries, item.getName() + "/");
+            entries.put(rootName, new ArchiveEntry(rootName, null));
+            // 子树一次查出, 上级目录在前, 按 parentId 拼出条目路径
+            Map<Long, String> folderNames = new HashMap<>();
+            folderNames.put(item.getId(), rootName);
+            for (File child : fileTreeService.listDescendants(item)) {
+                String parentName = folderNames.get(child.getParentId());
+                if (parentName == null) {
+                    continue;
+                }
+                String relative = parentName + child.getName();
+                if (FOLDER_TYPE.equals(child.getType())) {
+                    folderNames.put(child.getId(), relative + "/");
+                    entries.putIfAbsent(relative + "/", new ArchiveEntry(relative + "/", null));
+                } else {
+                    addEntry(entries, relative, child);
+                }
+            }
+            if (entries.size() > maxEntries) {
+                break;
+            }
+        }
+        if (entries.size() > maxEntries) {
+            throw new IllegalArgumentException(String.format("打包文件数超过上限: %d", maxEntries));
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    private void addEntry(Map<String, ArchiveEntry> entries, String name, File file) {
+        String unique = uniqueName(entries, name);
+        entries.put(unique, new ArchiveEntry(unique, file));
+    }
+
+    private String uniqueName(Map<String, ArchiveEntry> entries, String name) {
+        if (!entries.containsKey(name)) {
+            return name;
+        }
+        boolean directory = name.endsWith("/");
+        String base = directory ? name.substring(0, name.length() - 1) : name;
+        int dot = directory ? -1 : base.lastIndexOf('.');
+        int slash = base.lastIndexOf('/');
+        String stem = dot > slash + 1 ? base.substring(0, dot) : base;
+        String ext = dot > slash + 1 ? base.substring(dot) : "";
+        for (int n = 1;; n++) {
+            String candidate = stem + " (" + n + ")" + ext + (directory ? "/" : "");
+            if (!entries.containsKey(candidate)) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.enums.UserRole;
+import cn.lmao.cloudown.service.DownloadService;
+import cn.lmao.cloudown.service.FileCacheService;
+import cn.lmao.cloudown.util.LogUtil;
+import cn.lmao.cloudown.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 文件下载输出
+ * 响应体被拆分为若干段: 文件区间段通过 FileChannel 按绝对位置读取(不改变通道位置), multipart 分隔头为内存段
+ * 热点小文件的区间段直接取自堆外缓存, 不访问磁盘
+ * 启用限速时以 Servlet 异步非阻塞写出: 令牌不足时释放线程, 由调度器在令牌补足后继续写出
+ */
+@Service
+@RequiredArgsConstructor
+public class DownloadServiceImpl implements DownloadService {
+
+    private static final String CRLF = "\r\n";
+    private static final Pattern CONTENT_HASH_PATTERN = Pattern.compile("^[0-9a-fA-F]{64}$");
+    // 限速写出时单次写入的最大字节数
+    private static final int THROTTLE_WRITE_SIZE = 64 * 1024;
+    // 令牌少于该值(且未到段尾)时等待补充, 避免大量小包写出
+    private static final int THROTTLE_MIN_WRITE = 8 * 1024;
+
+    private final MeterRegistry meterRegistry;
+    private final FileCacheService fileCacheService;
+    private final Logger log = LogUtil.getLogger();
+
+    // 合并重叠/相邻区间后允许的最大区间数, 超出时忽略 Range 返回完整文件
+    @Value("${file.download.max-ranges:32}")
+    private int maxRanges;
+
+    @Value("${file.download.throttle.enabled:true}")
+    private boolean throttleEnabled;
+
+    // 全站下载带宽(每秒), 0 表示不限制
+    @Value("${file.download.throttle.global-rate:0}")
+    private DataSize globalRate;
+
+    // 各角色单用户下载带宽(每秒), 0 表示不限制
+    @Value("${file.download.throttle.role-rate.guest:5MB}")
+    private DataSize guestRate;
+
+    @Value("${file.download.throttle.role-rate.user:20MB}")
+    private DataSize userRate;
+
+    @Value("${file.download.throttle.role-rate.admin:0}")
+    private DataSize adminRate;
+
+    @Value("${file.download.throttle.role-rate.super-admin:0}")
+    private DataSize superAdminRate;
+
+    // 突发量: 令牌桶容量为该秒数的带宽
+    @Value("${file.download.throttle.burst-seconds:4}")
+    private double burstSeconds;
+
+    private final Map<UserRole, Long> roleRates = new EnumMap<>(UserRole.class);
+    // 弱引用值: 进行中的限速下载由 ThrottledWriter 持有令牌桶, 下载期间条目不会被回收;
+    // 不按时间过期, 否则长时间下载期间条目失效后同一用户的新下载会拿到满令牌的新桶, 绕过限速
+    private final Cache<Long, TokenBucket> userBuckets = CacheBuilder.newBuilder()
+            .weakValues()
+            .build();
+    private TokenBucket globalBucket;
+    private ScheduledExecutorService throttleScheduler;
+    private final AtomicInteger throttledDownloads = new AtomicInteger();
+    private Counter throttleWaitCounter;
+
+    @PostConstruct
+    public void initThrottle() {
+        roleRates.put(UserRole.GUEST, guestRate.toBytes());
+        roleRates.put(UserRole.USER, userRate.toBytes());
+        roleRates.put(UserRole.ADMIN, adminRate.toBytes());
+        roleRates.put(UserRole.SUPER_ADMIN, superAdminRate.toBytes());
+        if (globalRate.toBytes() > 0) {
+            globalBucket = newBucket(globalRate.toBytes());
+        }
+        throttleScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("DownloadThrottle-%d").setDaemon(true).build());
+        Gauge.builder("cloudown.download.throttled.active", throttledDownloads, AtomicInteger::get)
+                .description("进行中的限速下载数")
+                .register(meterRegistry);
+        throttleWaitCounter = Counter.builder("cloudown.download.throttle.waits")
+                .description("下载因令牌不足而等待的次数")
+                .register(meterRegistry);
+        log.info("下载限速: enabled={}, 全局={}, 角色={}, 突发={}s", throttleEnabled, globalRate, roleRates,
+                burstSeconds);
+    }
+
+    @PreDestroy
+    public void shutdownThrottle() {
+        throttleScheduler.shutdownNow();
+    }
+
+    /**
+     * 响应体片段: data 非空时为内存数据, 否则为文件中的 [position, position + length) 区间
+     */
+    private record Segment(byte[] data, long position, long length) {
+
+        static Segment bytes(String text) {
+            byte[] data = text.getBytes(StandardCharsets.ISO_8859_1);
+            return new Segment(data, 0, data.length);
+        }
+
+        static Segment file(long position, long length) {
+            return new Segment(null, position, length);
+        }
+    }
+
+    private record Range(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    @Override
+    public void writeFile(HttpServletRequest request, HttpServletResponse response, Long userId, UserRole role,
+            File file, String fileName, boolean inline) throws IOException {
+        String etag = etagOf(file);
+        long lastModified = file.getUpdateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        // If-None-Match / If-Modified-Since 命中时返回 304(If-Match 等前置条件失败时返回 412), 不访问文件
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            log.debug("条件请求命中: fileId={}, status={}", file.getId(), response.getStatus());
+            return;
+        }
+        // 允许浏览器缓存, 但每次使用前须携带校验器重新验证; 下载需鉴权, 不允许共享缓存
+        // 调用方已指定缓存策略(签名链接)时保留
+        if (!response.containsHeader(HttpHeaders.CACHE_CONTROL)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        }
+
+        Path filePath = Path.of(file.getPath());
+        ByteBuffer cached = fileCacheService.get(file);
+        long size = cached != null ? cached.capacity() : Files.size(filePath);
+        String contentType = MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, (inline ? "inline" : "attachment")
+                + "; filename=\"" + URLEncoder.encode(fileName, StandardCharsets.UTF_8)
+                + "\"; filename*=UTF-8''" + URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20"));
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        List<Range> ranges = resolveRanges(request, size, etag, lastModified);
+        List<Segment> segments = new ArrayList<>();
+        if (ranges == null) {
+            // 完整文件
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            segments.add(Segment.file(0, size));
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setContentLengthLong(0);
+            log.debug("请求区间无法满足: {}, size={}", request.getHeader(HttpHeaders.RANGE), size);
+            return;
+        } else if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, size));
+            segments.add(Segment.file(range.start(), range.length()));
+        } else {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+            for (Range range : ranges) {
+                segments.add(Segment.bytes(CRLF + "--" + boundary + CRLF
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                        + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, size) + CRLF + CRLF));
+                segments.add(Segment.file(range.start(), range.length()));
+            }
+            segments.add(Segment.bytes(CRLF + "--" + boundary + "--" + CRLF));
+        }
+
+        response.setContentLengthLong(segments.stream().mapToLong(Segment::length).sum());
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+
+        TokenBucket[] buckets = throttleBuckets(userId, role);
+        if (buckets.length > 0 && request.isAsyncSupported()) {
+            startThrottledWrite(request, response, filePath, cached, segments, buckets);
+        } else if (cached != null) {
+            writeCachedSegments(cached, segments, response.getOutputStream());
+        } else {
+            writeSegments(filePath, segments, response.getOutputStream());
+        }
+    }
+
+    /**
+     * 文件内容的 SHA-256 作为强 ETag; 尚未计算出有效哈希(占位值)时不提供 ETag, 仅依赖 Last-Modified
+     */
+    private String etagOf(File file) {
+        String hash = file.getHash();
+        return hash != null && CONTENT_HASH_PATTERN.matcher(hash).matches() ? "\"" + hash + "\"" : null;
+    }
+
+    /**
+     * 当前用户适用的令牌桶(用户桶在前, 全局桶在后), 均不限速时返回空数组
+     */
+    private TokenBucket[] throttleBuckets(Long userId, UserRole role) {
+        if (!throttleEnabled) {
+            return new TokenBucket[0];
+        }
+        List<TokenBucket> buckets = new ArrayList<>(2);
+        long rate = roleRates.getOrDefault(role, 0L);
+        if (rate > 0) {
+            try {
+                buckets.add(userBuckets.get(userId, () -> newBucket(rate)));
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (globalBucket != null) {
+            buckets.add(globalBucket);
+        }
+        return buckets.toArray(new TokenBucket[0]);
+    }
+
+    private TokenBucket newBucket(long ratePerSecond) {
+        return new TokenBucket(ratePerSecond, Math.max(THROTTLE_WRITE_SIZE, (long) (ratePerSecond * burstSeconds)));
+    }
+
+    private void startThrottledWrite(HttpServletRequest request, HttpServletResponse response, Path filePath,
+            ByteBuffer cached, List<Segment> segments, TokenBucket[] buckets) throws IOException {
+        FileChannel source = cached == null ? FileChannel.open(filePath, StandardOpenOption.READ) : null;
+        try {
+            AsyncContext asyncContext = request.startAsync();
+            // 限速下载耗时与文件大小成正比, 不设异步超时, 连接异常由 onError 处理
+            asyncContext.setTimeout(0);
+            ThrottledWriter writer = new ThrottledWriter(asyncContext, response.getOutputStream(), source, cached,
+                    segments.iterator(), buckets);
+            asyncContext.addListener(writer);
+            throttledDownloads.incrementAndGet();
+            response.getOutputStream().setWriteListener(writer);
+        } catch (IOException | RuntimeException e) {
+            if (source != null) {
+                source.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 解析 Range 请求头
+     *
+     * @return null 表示返回完整文件; 空列表表示区间均无法满足(416); 否则为排序并合并后的区间
+     */
+    private List<Range> resolveRanges(HttpServletRequest request, long size, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (!StringUtils.hasText(rangeHeader) || !isIfRangeSatisfied(request, etag, lastModified)) {
+            return null;
+        }
+
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // 语法错误的 Range 按规范忽略
+            log.debug("忽略无效的Range请求头: {}", rangeHeader);
+            return null;
+        }
+
+        List<Range> satisfiable = new ArrayList<>(httpRanges.size());
+        for (HttpRange httpRange : httpRanges) {
+            // 起始位置超出文件大小的区间无法满足, 跳过
+            if (size == 0) {
+                continue;
+            }
+            try {
+                long start = httpRange.getRangeStart(size);
+                long end = httpRange.getRangeEnd(size);
+                if (start < size && start <= end) {
+                    satisfiable.add(new Range(start, end));
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("跳过无法满足的区间: {}", httpRange);
+            }
+        }
+        if (satisfiable.isEmpty()) {
+            return satisfiable;
+        }
+
+        // 合并重叠或相邻的区间, 防止通过大量重叠区间放大响应
+        satisfiable.sort(Comparator.comparingLong(Range::start));
+        List<Range> merged = new ArrayList<>();
+        Range current = satisfiable.get(0);
+        for (Range next : satisfiable.subList(1, satisfiable.size())) {
+            if (next.start() <= current.end() + 1) {
+                current = new Range(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged.size() > maxRanges ? null : merged;
+    }
+
+    /**
+     * If-Range: 携带的 ETag(强比较) 或日期与当前文件一致时才按区间返回, 否则返回完整文件
+     */
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etag != null && !ifRange.startsWith("W/") && ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String contentRange(Range range, long size) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + size;
+    }
+
+    private void writeSegments(Path filePath, List<Segment> segments, OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            for (Segment segment : segments) {
+                if (segment.data() != null) {
+                    outputStream.write(segment.data());
+                    continue;
+                }
+                long position = segment.position();
+                long remaining = segment.length();
+                while (remaining > 0) {
+                    long transferred = source.transferTo(position, remaining, target);
+                    if (transferred <= 0) {
+                        throw new IOException("文件在下载过程中被截断: " + filePath.getFileName());
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        }
+        outputStream.flush();
+    }
+
+    private void writeCachedSegments(ByteBuffer cached, List<Segment> segments, OutputStream outputStream)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        for (Segment segment : segments) {
+            if (segment.data() != null) {
+                outputStream.write(segment.data());
+                continue;
+            }
+            ByteBuffer slice = slice(cached, segment.position(), segment.length());
+            while (slice.hasRemaining()) {
+                target.write(slice);
+            }
+        }
+        outputStream.flush();
+    }
+
+    private static ByteBuffer slice(ByteBuffer cached, long position, long length) {
+        return cached.duplicate().position((int) position).limit((int) (position + length));
+    }
+
+    /**
+     * 限速写出: 每次写出前从所有令牌桶取令牌, 不足时挂起并由调度器在令牌补足后恢复, 等待期间不占用线程
+     * 容器回调(onWritePossible)与调度器恢复互斥执行
+     */
+    private final class ThrottledWriter implements WriteListener, AsyncListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream outputStream;
+        // 二者其一非空: 磁盘文件或缓存内容
+        private final FileChannel source;
+        private final ByteBuffer cached;
+        private final Iterator<Segment> segments;
+        // 强引用持有令牌桶, 保证下载期间 userBuckets 中的弱引用条目不被回收
+        private final TokenBucket[] buckets;
+        private final ByteBuffer buffer = ByteBuffer.allocate(THROTTLE_WRITE_SIZE);
+        private Segment current;
+        private long position;
+        private long remaining;
+        private boolean finished;
+
+        ThrottledWriter(AsyncContext asyncContext, ServletOutputStream outputStream, FileChannel source,
+                ByteBuffer cached, Iterator<Segment> segments, TokenBucket[] buckets) {
+            this.asyncContext = asyncContext;
+            this.outputStream = outputStream;
+            this.source = source;
+            this.cached = cached;
+            this.segments = segments;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public synchronized void onWritePossible() throws IOException {
+            while (!finished && outputStream.isReady()) {
+                if (remaining == 0) {
+                    if (!segments.hasNext()) {
+                        finish();
+                        return;
+                    }
+                    current = segments.next();
+                    position = current.position();
+                    remaining = current.length();
+                }
+                if (current.data() != null) {
+                    // multipart 分隔头很小, 不计入限速
+                    outputStream.write(current.data());
+                    remaining = 0;
+                    continue;
+                }
+
+                long minimum = Math.min(remaining, THROTTLE_MIN_WRITE);
+                int granted = (int) TokenBucket.takeAll(buckets, Math.min(remaining, THROTTLE_WRITE_SIZE), minimum);
+                if (granted == 0) {
+                    long waitNanos = 0;
+                    for (TokenBucket bucket : buckets) {
+                        waitNanos = Math.max(waitNanos, bucket.nanosUntil(minimum));
+                    }
+                    throttleWaitCounter.increment();
+                    throttleScheduler.schedule(this::resume, Math.max(waitNanos, 1_000_000), TimeUnit.NANOSECONDS);
+                    return;
+                }
+
+                buffer.clear().limit(granted);
+                if (cached != null) {
+                    buffer.put(slice(cached, position, granted));
+                }
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("文件在下载过程中被截断");
+                    }
+                }
+                outputStream.write(buffer.array(), 0, granted);
+                position += granted;
+                remaining -= granted;
+            }
+        }
+
+        private void resume() {
+            try {
+                onWritePossible();
+            } catch (IOException | RuntimeException e) {
+                onError(e);
+            }
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            throttledDownloads.decrementAndGet();
+            try {
+                if (source != null) {
+                    source.close();
+                }
+            } catch (IOException e) {
+                log.debug("关闭下载文件失败: {}", e.getMessage());
+            }
+            asyncContext.complete();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.debug("限速下载中断: {}", t.getMessage());
+            finish();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            onError(event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
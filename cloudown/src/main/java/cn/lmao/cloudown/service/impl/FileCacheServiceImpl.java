@@ -0,0 +1,273 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.service.FileCacheService;
+import cn.lmao.cloudown.util.FrequencySketch;
+import cn.lmao.cloudown.util.LogUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 热点小文件缓存
+ * 文件内容保存在 DirectByteBuffer 中(堆外, 不增加 GC 压力), 按物理路径索引, 秒传共享同一物理文件的记录共用缓存
+ * 准入采用 TinyLFU: 空间不足时只有访问频率高于待淘汰的 LRU 尾部条目才替换, 避免一次性下载冲刷热点
+ * 同一文件的并发未命中只加载一次; 堆外内存在加载前即计入占用, 总量不超过上限
+ */
+@Service
+@RequiredArgsConstructor
+public class FileCacheServiceImpl implements FileCacheService {
+
+    // 估算采样窗口时假设的平均文件大小
+    private static final long AVERAGE_ENTRY_SIZE = 16 * 1024;
+
+    private final MeterRegistry meterRegistry;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.download.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    // 缓存占用的堆外内存上限
+    @Value("${file.download.cache.max-memory:64MB}")
+    private DataSize maxMemory;
+
+    // 超过该大小的文件不缓存
+    @Value("${file.download.cache.max-file-size:1MB}")
+    private DataSize maxFileSize;
+
+    // 访问频率达到该值才准入, 只下载过一次的文件不占用缓存
+    @Value("${file.download.cache.min-frequency:2}")
+    private int minFrequency;
+
+    private record Entry(ByteBuffer data, String hash) {
+
+        boolean matches(File file) {
+            return data.capacity() == file.getSize() && Objects.equals(hash, file.getHash());
+        }
+    }
+
+    // 访问顺序: 迭代从最久未访问的条目开始
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    // 每次失效递增, 加载期间发生失效时丢弃加载结果
+    private long invalidations;
+    // 进行中的加载, 并发未命中同一文件时只加载一次
+    private final Map<String, CompletableFuture<Entry>> loading = new HashMap<>();
+    private FrequencySketch sketch;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter rejectedCounter;
+    private Counter evictionCounter;
+
+    @PostConstruct
+    public void init() {
+        int expectedEntries = (int) Math.min(1 << 20, Math.max(256, maxMemory.toBytes() / AVERAGE_ENTRY_SIZE));
+        sketch = new FrequencySketch(expectedEntries);
+        hitCounter = requestCounter("hit");
+        missCounter = requestCounter("miss");
+        rejectedCounter = Counter.builder("cloudown.download.cache.rejections")
+                .description("未被准入缓存的次数")
+                .register(meterRegistry);
+        evictionCounter = Counter.builder("cloudown.download.cache.evictions")
+                .description("缓存淘汰条目数")
+                .register(meterRegistry);
+        Gauge.builder("cloudown.download.cache.size", this, FileCacheServiceImpl::usedBytes)
+                .description("缓存占用的堆外内存")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("cloudown.download.cache.entries", this, FileCacheServiceImpl::entryCount)
+                .description("缓存条目数")
+                .register(meterRegistry);
+        Gauge.builder("cloudown.download.cache.hit.ratio", this, FileCacheServiceImpl::hitRatio)
+                .description("缓存命中率")
+                .register(meterRegistry);
+        log.info("下载缓存: enabled={}, 内存上限={}, 单文件上限={}, 准入频率={}", cacheEnabled, maxMemory, maxFileSize,
+                minFrequency);
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("cloudown.download.cache.requests")
+                .description("下载缓存查询结果")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ByteBuffer get(File file) {
+        Long size = file.getSize();
+        if (!cacheEnabled || size == null || size <= 0 || size > maxFileSize.toBytes()
+                || size > maxMemory.toBytes()) {
+            return null;
+        }
+        String key = file.getPath();
+        CompletableFuture<Entry> pending;
+        CompletableFuture<Entry> own = null;
+        long generation = 0;
+        synchronized (this) {
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.matches(file)) {
+                    hitCounter.increment();
+                    return entry.data().duplicate();
+                }
+                remove(key);
+            }
+            missCounter.increment();
+            pending = loading.get(key);
+            if (pending == null) {
+                if (!admit(key, size)) {
+                    rejectedCounter.increment();
+                    return null;
+                }
+                // 加载前先占用容量, 进行中的加载计入 usedBytes, 堆外内存总量不超过上限
+                evictFor(size);
+                usedBytes += size;
+                generation = invalidations;
+                own = new CompletableFuture<>();
+                loading.put(key, own);
+            }
+        }
+
+        if (pending != null) {
+            // 同一文件已在加载, 等待其结果而不重复读取和分配
+            Entry loaded = pending.join();
+            return loaded != null && loaded.matches(file) ? loaded.data().duplicate() : null;
+        }
+
+        // 在锁外读取文件, 不阻塞其他请求的命中
+        Entry loaded = null;
+        try {
+            ByteBuffer data = load(Path.of(key), size);
+            loaded = data == null ? null : new Entry(data, file.getHash());
+        } finally {
+            synchronized (this) {
+                loading.remove(key, own);
+                boolean valid = loaded != null && generation == invalidations;
+                if (valid) {
+                    entries.put(key, loaded);
+                    log.debug("文件进入下载缓存: fileId={}, size={}", file.getId(), size);
+                } else {
+                    // 加载失败或加载期间发生失效, 归还占用的容量
+                    usedBytes -= size;
+                }
+                // 等待者总能得到结果, 失效时回退到磁盘读取
+                own.complete(valid ? loaded : null);
+            }
+        }
+        return loaded == null ? null : loaded.data().duplicate();
+    }
+
+    @Override
+    public synchronized void invalidate(String path) {
+        if (path == null) {
+            return;
+        }
+        invalidations++;
+        // 进行中的加载结果将被丢弃, 后续请求重新加载
+        loading.remove(path);
+        if (remove(path)) {
+            log.debug("下载缓存失效: {}", path);
+        }
+    }
+
+    /**
+     * TinyLFU 准入: 空间足够时直接准入; 否则从 LRU 尾部依次比较, 候选者比所有需淘汰的条目都更热才准入
+     */
+    private boolean admit(String key, long size) {
+        int frequency = sketch.frequency(key);
+        if (frequency < minFrequency) {
+            return false;
+        }
+        long reclaimable = maxMemory.toBytes() - usedBytes;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (reclaimable < size && iterator.hasNext()) {
+            Map.Entry<String, Entry> victim = iterator.next();
+            if (victim.getKey().equals(key)) {
+                reclaimable += victim.getValue().data().capacity();
+                continue;
+            }
+            if (sketch.frequency(victim.getKey()) >= frequency) {
+                return false;
+            }
+            reclaimable += victim.getValue().data().capacity();
+        }
+        return reclaimable >= size;
+    }
+
+    private void evictFor(long size) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (maxMemory.toBytes() - usedBytes < size && iterator.hasNext()) {
+            usedBytes -= iterator.next().data().capacity();
+            iterator.remove();
+            evictionCounter.increment();
+        }
+    }
+
+    private boolean remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        // 堆外内存在缓冲区不可达后由 Cleaner 释放, 进行中的下载持有的视图不受影响
+        usedBytes -= removed.data().capacity();
+        return true;
+    }
+
+    /**
+     * 读取整个文件到堆外缓冲区; 文件大小与记录不一致或读取失败时返回 null, 由调用方回退到磁盘读取
+     * 包级可见, 供测试统计加载次数
+     */
+    ByteBuffer load(Path path, long size) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != size) {
+                log.warn("文件大小与记录不一致, 不缓存: {}, 记录={}, 实际={}", path, size, channel.size());
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            return buffer.flip().asReadOnlyBuffer();
+        } catch (IOException | OutOfMemoryError e) {
+            log.warn("加载文件到下载缓存失败: {}, {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+}
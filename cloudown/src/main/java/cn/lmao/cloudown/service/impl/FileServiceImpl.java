@@ -1,36 +1,68 @@
 package cn.lmao.cloudown.service.impl;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import cn.lmao.cloudown.service.ContentHashService;
+import cn.lmao.cloudown.service.QuotaService;
+import cn.lmao.cloudown.service.UploadTuningService;
 import cn.lmao.cloudown.service.ThumbnailService;
 import org.slf4j.Logger;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.dto.BatchUploadItem;
+import cn.lmao.cloudown.model.dto.BatchUploadResult;
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.dto.FilePage;
+import cn.lmao.cloudown.model.dto.MergeJob;
 import cn.lmao.cloudown.model.entity.File;
 import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.UploadSession;
 import cn.lmao.cloudown.model.entity.User;
 import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
 import cn.lmao.cloudown.repository.FileRepository;
-import cn.lmao.cloudown.repository.UserRepository;
+import cn.lmao.cloudown.repository.FileSpecifications;
+import cn.lmao.cloudown.repository.FileSpecifications.ListSort;
+import cn.lmao.cloudown.service.FileCacheService;
 import cn.lmao.cloudown.service.FileService;
+import cn.lmao.cloudown.service.FileTreeService;
+import cn.lmao.cloudown.service.SignedUrlService;
+import cn.lmao.cloudown.service.UploadSessionService;
 import cn.lmao.cloudown.util.FileTypeChecker;
 import cn.lmao.cloudown.util.FileUtil;
 import cn.lmao.cloudown.util.LogUtil;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 import java.io.BufferedInputStream;
@@ -39,6 +71,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 @Service
@@ -46,75 +79,419 @@ import java.security.NoSuchAlgorithmException;
 public class FileServiceImpl implements FileService {
 
     private final FileRepository fileRepository;
-    private final UserRepository userRepository;
     private final FileUtil fileUtil;
     private final Logger log = LogUtil.getLogger();
     private final ThumbnailService thumbnailService;
+    private final UploadSessionService uploadSessionService;
+    private final ContentHashService contentHashService;
+    private final QuotaService quotaService;
+    private final UploadTuningService uploadTuningService;
+    private final FileCacheService fileCacheService;
+    private final SignedUrlService signedUrlService;
+    private final FileTreeService fileTreeService;
+    private final ThreadPoolTaskExecutor fileMergeIoExecutor;
+
+    private static final String MERGE_ENGINE_CHANNEL = "channel";
+    private static final String MERGE_ENGINE_STREAM = "stream";
+    private static final String MERGE_ENGINE_PARALLEL = "parallel";
+
+    // 分片合并引擎: channel(零拷贝) | stream(缓冲流) | parallel(多线程定位写入)
+    @Value("${file.merge.engine:channel}")
+    private String mergeEngine;
+
+    // 小于该大小的文件即使配置了 parallel 也顺序合并, 线程调度开销不划算
+    @Value("${file.merge.parallel.min-size:256MB}")
+    private DataSize parallelMinSize;
+
+    // 节点内同时进行的并行合并数上限, 超出时退回顺序合并, 避免多个大合并同时打满磁盘队列
+    @Value("${file.merge.parallel.max-concurrent:1}")
+    private int parallelMaxConcurrent;
+
+    private Semaphore parallelMergePermits;
+
+    private static final String DEDUP_SCOPE_GLOBAL = "global";
+
+    // 分页列表单页最大条数
+    @Value("${file.list.max-page-size:200}")
+    private int listMaxPageSize;
+
+    // 单次批量上传的最大项数
+    @Value("${file.upload.batch.max-items:100}")
+    private int batchMaxItems;
+
+    // 批量删除/还原/移动的最大选中项数(文件夹按一项计)
+    @Value("${file.bulk.max-items:1000}")
+    private int bulkMaxItems;
+
+    // 秒传去重范围: user(仅复用本人文件) | global(复用全站文件)
+    @Value("${file.hash.dedup-scope:user}")
+    private String dedupScope;
+
+    @PostConstruct
+    void initMergeLimits() {
+        parallelMergePermits = new Semaphore(Math.max(1, parallelMaxConcurrent));
+    }
+
+    @Override
+    public void uploadFile(User user, String sessionId, MultipartFile file, int chunkIndex, String chunkHash,
+            String contentEncoding, Long length) throws IOException, NoSuchAlgorithmException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("上传文件不能为空");
+        }
+        boolean encoded = isContentEncoded(contentEncoding);
+        if (encoded && (length == null || length <= 0)) {
+            throw new IllegalArgumentException("压缩分片需提供解压后的分片大小");
+        }
+        try (InputStream inputStream = decodeChunkStream(file.getInputStream(), contentEncoding)) {
+            receiveChunk(user, sessionId, inputStream, chunkIndex, null, encoded ? length : file.getSize(), chunkHash);
+        }
+    }
+
+    @Override
+    public void uploadChunkStream(User user, String sessionId, InputStream inputStream, int chunkIndex, long offset,
+            long length, String chunkHash, String contentEncoding) throws IOException, NoSuchAlgorithmException {
+        try (InputStream decoded = decodeChunkStream(inputStream, contentEncoding)) {
+            receiveChunk(user, sessionId, decoded, chunkIndex, offset, length, chunkHash);
+        }
+    }
 
     @Override
-    public void uploadFile(User user, String filename, MultipartFile file, int chunkIndex, int totalChunks)
+    public List<BatchUploadResult> uploadBatch(User user, List<BatchUploadItem> items, Map<String, MultipartFile> parts)
+            throws IOException {
+        if (items.isEmpty() || items.size() > batchMaxItems) {
+            throw new IllegalArgumentException(String.format("批量上传项数无效: %d, 上限: %d", items.size(), batchMaxItems));
+        }
+
+        // 用户目录每批只解析一次
+        Path userDir = Path.of(fileUtil.getUserPath(user.getId()));
+        List<BatchUploadResult> results = new ArrayList<>(items.size());
+        for (BatchUploadItem item : items) {
+            MultipartFile part = item.getPart() == null ? null : parts.get(item.getPart());
+            try {
+                if (part == null || part.isEmpty()) {
+                    throw new IllegalArgumentException("缺少文件数据: " + item.getPart());
+                }
+                if (item.isChunk()) {
+                    if (item.getIndex() == null) {
+                        throw new IllegalArgumentException("缺少分片索引: " + item.getPart());
+                    }
+                    try (InputStream inputStream = part.getInputStream()) {
+                        receiveChunk(user, item.getSessionId(), inputStream, item.getIndex(), null, part.getSize(),
+                                item.getChunkHash());
+                    }
+                    results.add(BatchUploadResult.success(item.getPart(), null));
+                } else {
+                    File saved = saveSmallFile(user, userDir, part, item);
+                    results.add(BatchUploadResult.success(item.getPart(), saved.getId()));
+                }
+            } catch (CustomException e) {
+                results.add(BatchUploadResult.error(item.getPart(), e.getCode(), e.getMsg()));
+            } catch (IllegalArgumentException e) {
+                results.add(BatchUploadResult.error(item.getPart(), 400, e.getMessage()));
+            } catch (Exception e) {
+                log.warn("批量上传项失败: part={}, error={}", item.getPart(), e.getMessage());
+                results.add(BatchUploadResult.error(item.getPart(), ErrorOperationStatus.FILE_UPLOAD_FAIL));
+            }
+        }
+        log.info("批量上传完成: {}项, 成功{}项", items.size(),
+                results.stream().filter(r -> r.getCode() == 200).count());
+        return results;
+    }
+
+    /**
+     * 保存一个完整的小文件: 占用容量、写入时计算哈希、生成缩略图并保存记录
+     */
+    private File saveSmallFile(User user, Path userDir, MultipartFile part, BatchUploadItem item)
             throws IOException, NoSuchAlgorithmException {
+        String fileName = StringUtils.getFilename(StringUtils.cleanPath(StringUtils.hasText(item.getFileName())
+                ? item.getFileName() : Objects.requireNonNull(part.getOriginalFilename())));
+        if (!StringUtils.hasText(fileName)) {
+            throw new IllegalArgumentException("文件名不能为空: " + item.getPart());
+        }
+        String path = StringUtils.hasText(item.getPath()) ? item.getPath() : "my-files/";
+        long size = part.getSize();
 
-        log.debug("开始上传文件分片: {} [分片 {}/{}]", filename, chunkIndex + 1, totalChunks);
+        quotaService.charge(user.getId(), size);
+        Path target = userDir.resolve(UUID.randomUUID().toString().replace("-", "") + "_" + fileName);
+        try {
+            MessageDigest digest = MessageDigest.getInstance(ContentHashService.HASH_ALGORITHM);
+            try (InputStream inputStream = part.getInputStream()) {
+                writeChunk(inputStream, target, 0, size, digest, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+            }
+            String hash = FileUtil.bytesToHex(digest.digest());
+            String thumbnailPath = thumbnailService.generateThumbnail(target, user.getId());
+            File fileEntity = saveFileEntity(user, fileName, target, size, path, hash, thumbnailPath);
+            contentHashService.register(hash);
+            return fileEntity;
+        } catch (Exception e) {
+            quotaService.refund(user.getId(), size);
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
 
+    /**
+     * 接收一个分片: 校验参数后将输入流写入暂存文件, 长度与摘要校验通过后才提交到分片文件或目标文件, 并记录分片摘要
+     * 校验失败的分片不会改动已接收的数据; 已接收分片的重传按摘要幂等处理
+     *
+     * @param offset 客户端声明的分片偏移, 为 null 时不校验
+     */
+    private void receiveChunk(User user, String sessionId, InputStream inputStream, int chunkIndex, Long offset,
+            long length, String chunkHash) throws IOException, NoSuchAlgorithmException {
+
+        log.debug("开始上传文件分片: session={} [分片 {}]", sessionId, chunkIndex + 1);
+
+        Path scratchFile = null;
         try {
-            if (totalChunks * file.getSize() + user.getUsedCapacity() > user.getTotalCapacity()) {
-                throw new CustomException(ErrorOperationStatus.STORAGE_QUOTA_EXHAUSTED);
+            // 1. 获取上传会话
+            // 容量已在会话创建时预留, 分片热路径无需检查配额
+            UploadSession session = uploadSessionService.getActiveSession(user.getId(), sessionId);
+
+            // 2. 参数校验
+            validateUploadParams(session, chunkIndex, offset, length);
+
+            // 3. 写入暂存文件, 写入同时计算分片摘要
+            MessageDigest chunkDigest = MessageDigest.getInstance(ContentHashService.HASH_ALGORITHM);
+            scratchFile = uploadSessionService.getScratchPath(session, chunkIndex);
+            // 记录在途分片数与单连接吞吐量, 供上传参数协商使用
+            uploadTuningService.chunkStarted();
+            long writeStart = System.nanoTime();
+            boolean written = false;
+            try {
+                writeChunk(inputStream, scratchFile, 0, length, chunkDigest, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                written = true;
+            } catch (ZipException | EOFException e) {
+                // 压缩数据损坏或被截断, 由客户端重传该分片
+                throw new IllegalArgumentException("压缩分片数据无效: " + e.getMessage(), e);
+            } finally {
+                uploadTuningService.chunkFinished(user.getId(), length, System.nanoTime() - writeStart, written);
             }
-            // 1. 参数校验
-            validateUploadParams(file, filename, chunkIndex, totalChunks);
 
-            // 2. 准备文件信息
-            String fileName = StringUtils.cleanPath(Objects.requireNonNull(filename));
+            // 4. 校验客户端提供的分片摘要, 不一致时拒绝该分片, 由客户端单独重传
+            byte[] digest = chunkDigest.digest();
+            if (StringUtils.hasText(chunkHash) && !FileUtil.bytesToHex(digest).equalsIgnoreCase(chunkHash)) {
+                log.warn("分片摘要不一致: session={}, chunk={}", sessionId, chunkIndex);
+                throw new CustomException(ErrorOperationStatus.CHUNK_CHECKSUM_MISMATCH);
+            }
 
-            // 3. 保存分片文件
-            saveChunkFile(user.getId(), fileName, file, chunkIndex, totalChunks);
+            // 5. 提交分片并记录完成位图及摘要; 同一会话的提交串行化, 并发重传同一分片时只有一次生效
+            synchronized (session) {
+                byte[] received = uploadSessionService.getChunkDigest(session, chunkIndex);
+                if (received != null) {
+                    // 已接收的分片不再改写, 位图、摘要与增量哈希始终与磁盘数据一致
+                    if (!MessageDigest.isEqual(received, digest)) {
+                        log.warn("重传分片与已接收内容不一致: session={}, chunk={}", sessionId, chunkIndex);
+                        throw new CustomException(ErrorOperationStatus.CHUNK_CONFLICT);
+                    }
+                    log.debug("分片已接收, 忽略重传: session={}, chunk={}", sessionId, chunkIndex);
+                    return;
+                }
+                commitChunk(session, chunkIndex, scratchFile);
+                uploadSessionService.markChunkReceived(session, chunkIndex, digest, length);
+            }
+            // 异步推进内容哈希的增量计算
+            contentHashService.onChunkReceived(session);
 
-            log.debug("文件分片上传成功: {} [分片 {}]", filename, chunkIndex + 1);
+            log.debug("文件分片上传成功: {} [分片 {}/{}]", session.getFileName(), chunkIndex + 1,
+                    session.getTotalChunks());
 
         } catch (Exception e) {
-            log.error("文件分片上传失败: filename={}, chunk={}/{}, error={}",
-                    filename, chunkIndex + 1, totalChunks, e.getMessage(), e);
+            log.error("文件分片上传失败: session={}, chunk={}, error={}",
+                    sessionId, chunkIndex + 1, e.getMessage(), e);
             throw e;
+        } finally {
+            if (scratchFile != null) {
+                Files.deleteIfExists(scratchFile);
+            }
+        }
+    }
+
+    /**
+     * 将校验通过的暂存分片提交到会话数据中
+     * 分片模式原子重命名为分片文件; 直写模式按 chunkIndex * chunkSize 偏移写入预分配的目标文件
+     */
+    private void commitChunk(UploadSession session, int chunkIndex, Path scratchFile) throws IOException {
+        if (UploadSessionServiceImpl.UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+            try (FileChannel target = FileChannel.open(uploadSessionService.getTargetPath(session),
+                    StandardOpenOption.WRITE)) {
+                transferChunkAt(scratchFile, target, chunkIndex * session.getChunkSize());
+            }
+        } else {
+            Path chunkFile = uploadSessionService.getChunkPath(session, chunkIndex);
+            try {
+                Files.move(scratchFile, chunkFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(scratchFile, chunkFile, StandardCopyOption.REPLACE_EXISTING);
+            }
         }
     }
 
     @Override
-    public void mergeFile(User user, String fileName, Long size, int chunksCount, String path)
+    public File mergeFile(User user, String sessionId, String path, String merkleRoot, MergeJob job)
             throws IOException, NoSuchAlgorithmException {
 
+        job.setPhase(MergeJob.Phase.VALIDATING);
+        UploadSession session = uploadSessionService.getActiveSession(user.getId(), sessionId);
+        String fileName = StringUtils.cleanPath(Objects.requireNonNull(session.getFileName()));
+        Long size = session.getTotalSize();
+        int chunksCount = session.getTotalChunks();
+
         log.info("开始合并文件: {} (共{}个分片, 大小:{}字节)", fileName, chunksCount, size);
 
+        // 1. 验证所有分片均已接收
+        if (!uploadSessionService.isAllChunksReceived(session)) {
+            throw new IOException(String.format("分片未全部上传，期望: %d, 实际: %d", chunksCount,
+                    uploadSessionService.getReceivedChunks(session).length));
+        }
+
+        // 分片在接收时均已校验摘要, 此处由分片摘要构建 Merkle 根完成整体校验, 无需再次读取文件
+        String root = uploadSessionService.computeMerkleRoot(session);
+        if (StringUtils.hasText(merkleRoot)) {
+            if (root == null) {
+                log.warn("会话缺少分片摘要, 跳过 Merkle 校验: session={}", sessionId);
+            } else if (!root.equalsIgnoreCase(merkleRoot)) {
+                log.warn("Merkle 根不一致: session={}, 期望={}, 实际={}", sessionId, merkleRoot, root);
+                throw new CustomException(ErrorOperationStatus.MERKLE_ROOT_MISMATCH);
+            }
+        }
+
         Path userDir = Path.of(fileUtil.getUserPath(user.getId()));
-        Path tempDir = Path.of(fileUtil.getTempPath(user.getId()));
-        Path tempMergedFile = userDir.resolve(fileName + ".tmp." + System.currentTimeMillis());
-        Path finalFile = userDir.resolve(fileName);
+        Path finalFile = uploadSessionService.getFinalPath(session);
+
+        // 2~4. 生成最终文件
+        job.setPhase(MergeJob.Phase.MERGING);
+        if (UploadSessionServiceImpl.UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+            // 直写模式下数据已在目标文件中
+            job.setBytesMerged(size);
+            completeDirectUpload(session, finalFile);
+        } else {
+            mergeChunkUpload(session, userDir, finalFile, job::setBytesMerged);
+        }
+
+        String hash;
+        File fileEntity;
+        try {
+            // 5. 计算内容哈希、生成缩略图并保存文件记录
+            job.setPhase(MergeJob.Phase.VERIFYING);
+            hash = contentHashService.finishDigest(session, finalFile);
+            job.setPhase(MergeJob.Phase.THUMBNAIL);
+            String thumbnailPath = thumbnailService.generateThumbnail(finalFile, user.getId());
+            job.setPhase(MergeJob.Phase.FINALIZING);
+
+            // 6. 预留容量转为已用容量; 未预留(旧会话或上次保存失败)时直接按条件占用
+            long reserved = uploadSessionService.takeReservation(session);
+            if (reserved > 0) {
+                quotaService.commit(user.getId(), reserved);
+            } else {
+                quotaService.charge(user.getId(), size);
+            }
+
+            try {
+                fileEntity = saveFileEntity(user, fileName, finalFile, size, path, hash, thumbnailPath);
+            } catch (RuntimeException e) {
+                quotaService.refund(user.getId(), size);
+                throw e;
+            }
+        } catch (Exception e) {
+            rollbackMerge(session, finalFile);
+            throw e;
+        }
+        contentHashService.register(hash);
+
+        uploadSessionService.completeSession(session);
+        if (!UploadSessionServiceImpl.UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+            // 会话完成后才删除分片
+            cleanTempChunksAsync(chunkPaths(session));
+        }
+        log.info("文件合并完成: {} (最终大小:{}字节)", fileName, size);
+        return fileEntity;
+    }
+
+    @Override
+    public void abortUpload(User user, String sessionId) {
+        UploadSession session = uploadSessionService.getActiveSession(user.getId(), sessionId);
+        uploadSessionService.abortSession(session, UploadSession.SessionStatus.ABORTED);
+        contentHashService.discard(sessionId);
+        log.info("上传已取消: {} session={}", session.getFileName(), sessionId);
+    }
+
+    @Override
+    public File instantUpload(User user, String contentHash, long size, String fileName, String path) {
+        String hash = contentHash.toLowerCase();
+        // 1. 布隆过滤器预判, 绝大多数新文件在此直接返回, 无需查库
+        if (!ContentHashService.isContentHash(hash) || !contentHashService.mightContain(hash)) {
+            return null;
+        }
+
+        // 2. 按哈希索引查找已存储的文件, 并确认物理文件仍然存在
+        File source = (DEDUP_SCOPE_GLOBAL.equalsIgnoreCase(dedupScope)
+                ? fileRepository.findFirstByHashAndSize(hash, size)
+                : fileRepository.findFirstByUserAndHashAndSize(user, hash, size))
+                .filter(f -> Files.isRegularFile(Path.of(f.getPath())))
+                .orElse(null);
+        if (source == null) {
+            return null;
+        }
+
+        Long parentId = fileTreeService.resolveFolder(user, path);
+
+        // 3. 原子占用容量, 不足时抛出异常
+        quotaService.charge(user.getId(), size);
+
+        // 4. 新建文件记录, 复用已存储的物理文件
+        String name = StringUtils.cleanPath(fileName);
+        File fileEntity = new File(name, source.getPath(), null, FileTypeChecker.getFileTypeDescription(name), user);
+        fileEntity.setSize(size);
+        fileEntity.setHash(hash);
+        fileEntity.setStatus(FileStatus.ACTIVE);
+        fileEntity.setThumbnailPath(source.getThumbnailPath());
+        try {
+            fileEntity = fileTreeService.create(fileEntity, parentId, true);
+        } catch (RuntimeException e) {
+            quotaService.refund(user.getId(), size);
+            throw e;
+        }
+
+        log.info("秒传成功: {} 复用文件ID={}", name, source.getId());
+        return fileEntity;
+    }
+
+    /**
+     * 分片模式: 读取全部临时分片并合并为最终文件
+     */
+    private void mergeChunkUpload(UploadSession session, Path userDir, Path finalFile, LongConsumer progress)
+            throws IOException {
+        Path tempMergedFile = userDir.resolve(session.getId() + ".tmp." + System.currentTimeMillis());
+        List<Path> chunkFiles = chunkPaths(session);
+
+        // 1. 验证所有分片文件完整性; 丢失的分片恢复为未接收, 由客户端重新上传后再次合并
+        List<Integer> missing = findMissingChunks(chunkFiles);
+        if (!missing.isEmpty()) {
+            log.warn("分片文件缺失, 需重新上传: session={}, chunks={}", session.getId(), missing);
+            uploadSessionService.resetChunks(session, missing);
+            // 增量摘要可能已包含丢失的分片, 合并时对完整文件重新计算
+            contentHashService.discard(session.getId());
+            throw new CustomException(ErrorOperationStatus.CHUNK_MISSING);
+        }
 
         try {
-            // 1. 验证所有分片完整性
-            validateAllChunks(tempDir, fileName, chunksCount);
 
             // 2. 合并文件
-            mergeChunksToFile(tempDir, tempMergedFile, fileName, chunksCount, size);
+            mergeChunksToFile(chunkFiles, tempMergedFile, session.getFileName(), progress);
 
             // 3. 验证合并后文件大小
             long mergedSize = Files.size(tempMergedFile);
-            if (mergedSize != size) {
-                throw new IOException(String.format("文件大小不匹配，期望: %d, 实际: %d", size, mergedSize));
+            if (mergedSize != session.getTotalSize()) {
+                throw new IOException(String.format("文件大小不匹配，期望: %d, 实际: %d",
+                        session.getTotalSize(), mergedSize));
             }
 
             // 4. 原子性重命名
             Files.move(tempMergedFile, finalFile, StandardCopyOption.REPLACE_EXISTING);
 
-            // 5. 保存文件记录
-            saveFileEntity(user, fileName, finalFile, size, path);
-
-            // 6. 更新用户存储使用量
-            user.setUsedCapacity(user.getUsedCapacity() + size);
-            userRepository.save(user);
-
-            log.info("文件合并完成: {} (最终大小:{}字节)", fileName, mergedSize);
-
         } catch (Exception e) {
             // 清理临时文件
             try {
@@ -123,113 +500,381 @@ public class FileServiceImpl implements FileService {
                 log.warn("清理临时文件失败: {}", tempMergedFile, cleanupEx);
             }
             throw e;
-        } finally {
-            // 清理分片文件
-            cleanTempChunksAsync(tempDir, fileName, chunksCount);
         }
+        // 分片保留到会话完成, 合并或保存失败时可直接重新合并
     }
 
-    // 私有辅助方法
-    private void validateUploadParams(MultipartFile file, String filename, int chunkIndex, int totalChunks) {
-        if (file.isEmpty()) {
-            throw new IllegalArgumentException("上传文件不能为空");
+    private List<Path> chunkPaths(UploadSession session) throws IOException {
+        List<Path> chunkFiles = new ArrayList<>(session.getTotalChunks());
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            chunkFiles.add(uploadSessionService.getChunkPath(session, i));
+        }
+        return chunkFiles;
+    }
+
+    /**
+     * 最终文件生成后的步骤失败: 撤销最终文件, 使会话回到合并前的状态(分片文件或直写目标文件仍在), 可重新合并
+     * 无法撤销时中止会话并删除最终文件, 不留下无法完成的上传中会话
+     */
+    private void rollbackMerge(UploadSession session, Path finalFile) {
+        contentHashService.discard(session.getId());
+        try {
+            if (UploadSessionServiceImpl.UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+                Files.move(finalFile, uploadSessionService.getTargetPath(session),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(finalFile);
+            }
+            log.warn("合并后处理失败, 已撤销最终文件, 可重新合并: session={}", session.getId());
+        } catch (IOException e) {
+            log.error("撤销合并失败, 中止上传会话: session={}, error={}", session.getId(), e.getMessage());
+            uploadSessionService.abortSession(session, UploadSession.SessionStatus.ABORTED);
+            try {
+                Files.deleteIfExists(finalFile);
+            } catch (IOException deleteEx) {
+                log.warn("删除最终文件失败: {}, error={}", finalFile, deleteEx.getMessage());
+            }
         }
-        if (filename.isEmpty()) {
-            throw new IllegalArgumentException("文件名不能为空");
+    }
+
+    /**
+     * 直写模式: 分片已写入目标文件, 只需校验文件大小后原子重命名
+     */
+    private void completeDirectUpload(UploadSession session, Path finalFile) throws IOException {
+        Path targetFile = uploadSessionService.getTargetPath(session);
+        if (Files.notExists(targetFile)) {
+            // 上次合并已重命名但未保存记录(如进程中断), 沿用已生成的最终文件
+            if (Files.isRegularFile(finalFile) && Files.size(finalFile) == session.getTotalSize()) {
+                log.info("沿用上次合并生成的文件: session={}", session.getId());
+                return;
+            }
+            // 已接收的数据全部丢失, 会话无法再完成
+            uploadSessionService.abortSession(session, UploadSession.SessionStatus.ABORTED);
+            contentHashService.discard(session.getId());
+            throw new IOException("直写目标文件不存在, 上传会话已中止: " + targetFile.getFileName());
+        }
+
+        // 2~3. 验证目标文件大小（预分配长度即为声明的文件大小）
+        long targetSize = Files.size(targetFile);
+        if (targetSize != session.getTotalSize()) {
+            throw new IOException(String.format("文件大小不匹配，期望: %d, 实际: %d",
+                    session.getTotalSize(), targetSize));
         }
-        if (chunkIndex < 0 || chunkIndex >= totalChunks) {
+
+        // 4. 原子性重命名
+        try {
+            Files.move(targetFile, finalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(targetFile, finalFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // 私有辅助方法
+    private void validateUploadParams(UploadSession session, int chunkIndex, Long offset, long length) {
+        if (chunkIndex < 0 || chunkIndex >= session.getTotalChunks()) {
             throw new IllegalArgumentException(
-                    String.format("无效的分片索引: %d, 总分片数: %d", chunkIndex, totalChunks));
+                    String.format("无效的分片索引: %d, 总分片数: %d", chunkIndex, session.getTotalChunks()));
         }
-        if (totalChunks <= 0) {
-            throw new IllegalArgumentException("分片总数必须大于0");
+        if (offset != null && offset != chunkIndex * session.getChunkSize()) {
+            throw new IllegalArgumentException(String.format("分片偏移不匹配: 分片 %d, 期望: %d, 实际: %d",
+                    chunkIndex, chunkIndex * session.getChunkSize(), offset));
+        }
+        long expectedLength = expectedChunkLength(session, chunkIndex);
+        if (length != expectedLength) {
+            throw new IllegalArgumentException(String.format("分片大小不匹配: 分片 %d, 期望: %d, 实际: %d",
+                    chunkIndex, expectedLength, length));
         }
     }
 
-    private void saveChunkFile(Long userId, String fileName, MultipartFile file,
-            int chunkIndex, int totalChunks) throws IOException {
-        Path tempDir = Path.of(fileUtil.getTempPath(userId));
-        String chunkFileName = String.format("%s.%d.%d.part", fileName, chunkIndex, totalChunks);
-        Path chunkFile = tempDir.resolve(chunkFileName);
+    private long expectedChunkLength(UploadSession session, int chunkIndex) {
+        long offset = chunkIndex * session.getChunkSize();
+        return Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+    }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, chunkFile, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * 将数据从输入流按位置写入文件, 写入同时更新摘要
+     * 分片先写入独立的暂存文件, 校验通过后再提交, 写入过程中的失败不会影响已接收的数据
+     * 原始流上传时输入流即为请求体, 数据不经过 multipart 临时文件
+     */
+    private void writeChunk(InputStream inputStream, Path targetFile, long position, long length,
+            MessageDigest digest, OpenOption... options) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(inputStream);
+        try (FileChannel target = FileChannel.open(targetFile, options)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int read = source.read(buffer);
+                if (read == -1) {
+                    throw new IllegalArgumentException(String.format("分片数据不完整, 缺少: %d字节", remaining));
+                }
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    position += target.write(buffer, position);
+                }
+                remaining -= read;
+                buffer.clear();
+            }
+        }
+        if (inputStream.read() != -1) {
+            throw new IllegalArgumentException("分片数据超出声明长度: " + length);
         }
     }
 
-    private void validateAllChunks(Path tempDir, String fileName, int chunksCount) throws IOException {
-        for (int i = 0; i < chunksCount; i++) {
-            String chunkFileName = String.format("%s.%d.%d.part", fileName, i, chunksCount);
-            Path chunkFile = tempDir.resolve(chunkFileName);
+    private boolean isContentEncoded(String contentEncoding) {
+        return StringUtils.hasText(contentEncoding) && !"identity".equalsIgnoreCase(contentEncoding.trim());
+    }
 
-            if (!Files.exists(chunkFile)) {
-                throw new IOException("分片文件不存在: " + chunkFileName);
+    /**
+     * 按 Content-Encoding 包装解压流, 数据边解压边写盘, 不在内存中缓存整个分片
+     * 解压后的数据量由 writeChunk 按声明的分片大小截止, 超出即拒绝, 无需额外限制压缩比
+     */
+    private InputStream decodeChunkStream(InputStream inputStream, String contentEncoding) throws IOException {
+        if (!isContentEncoded(contentEncoding)) {
+            return inputStream;
+        }
+        try {
+            return switch (contentEncoding.trim().toLowerCase()) {
+                case "gzip", "x-gzip" -> new GZIPInputStream(inputStream, 64 * 1024);
+                case "deflate" -> new InflaterInputStream(inputStream);
+                default -> throw new IllegalArgumentException("不支持的内容编码: " + contentEncoding);
+            };
+        } catch (ZipException | EOFException e) {
+            throw new IllegalArgumentException("压缩分片数据无效: " + e.getMessage(), e);
+        }
+    }
+
+    // 不存在或为空的分片索引
+    private List<Integer> findMissingChunks(List<Path> chunkFiles) throws IOException {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < chunkFiles.size(); i++) {
+            Path chunkFile = chunkFiles.get(i);
+            if (!Files.exists(chunkFile) || Files.size(chunkFile) == 0) {
+                missing.add(i);
             }
-            if (Files.size(chunkFile) == 0) {
-                throw new IOException("分片文件为空: " + chunkFileName);
+        }
+        return missing;
+    }
+
+    /**
+     * @param progress 合并进度回调, 参数为已写入的总字节数
+     */
+    private void mergeChunksToFile(List<Path> chunkFiles, Path outputFile, String fileName, LongConsumer progress)
+            throws IOException {
+        long startNanos = System.nanoTime();
+        String engine = MERGE_ENGINE_STREAM.equalsIgnoreCase(mergeEngine) ? MERGE_ENGINE_STREAM
+                : MERGE_ENGINE_PARALLEL.equalsIgnoreCase(mergeEngine) ? MERGE_ENGINE_PARALLEL : MERGE_ENGINE_CHANNEL;
+        long totalWritten;
+
+        if (MERGE_ENGINE_PARALLEL.equals(engine)) {
+            long[] offsets = chunkOffsets(chunkFiles);
+            long totalSize = offsets[chunkFiles.size()];
+            if (chunkFiles.size() > 1 && totalSize >= parallelMinSize.toBytes()
+                    && parallelMergePermits.tryAcquire()) {
+                try {
+                    totalWritten = mergeChunksInParallel(chunkFiles, offsets, outputFile, progress);
+                    logMergeThroughput(engine, fileName, totalWritten, System.nanoTime() - startNanos);
+                    return;
+                } catch (IOException e) {
+                    log.warn("并行合并失败, 回退到顺序合并: {}, error={}", fileName, e.getMessage());
+                } finally {
+                    parallelMergePermits.release();
+                }
             }
+            engine = MERGE_ENGINE_CHANNEL;
         }
+
+        if (MERGE_ENGINE_CHANNEL.equals(engine)) {
+            try {
+                totalWritten = mergeChunksByChannel(chunkFiles, outputFile, progress);
+            } catch (IOException e) {
+                // 零拷贝失败时（如文件系统不支持）回退到流式合并
+                log.warn("通道合并失败, 回退到流式合并: {}, error={}", fileName, e.getMessage());
+                engine = MERGE_ENGINE_STREAM;
+                totalWritten = mergeChunksByStream(chunkFiles, outputFile, progress);
+            }
+        } else {
+            totalWritten = mergeChunksByStream(chunkFiles, outputFile, progress);
+        }
+
+        logMergeThroughput(engine, fileName, totalWritten, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 各分片在目标文件中的偏移(分片大小的前缀和), 最后一项为总大小
+     */
+    private long[] chunkOffsets(List<Path> chunkFiles) throws IOException {
+        long[] offsets = new long[chunkFiles.size() + 1];
+        for (int i = 0; i < chunkFiles.size(); i++) {
+            offsets[i + 1] = offsets[i] + Files.size(chunkFiles.get(i));
+        }
+        return offsets;
+    }
+
+    /**
+     * 并行合并: 预分配目标文件, 由合并IO线程池将各分片并发写入各自的偏移
+     * FileChannel 的定位写入不依赖通道位置, 多线程共享同一通道是安全的
+     *
+     * @return 写入的总字节数
+     */
+    private long mergeChunksInParallel(List<Path> chunkFiles, long[] offsets, Path outputFile,
+            LongConsumer progress) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(outputFile.toFile(), "rw")) {
+            raf.setLength(offsets[chunkFiles.size()]);
+        }
+
+        AtomicLong totalWritten = new AtomicLong();
+        try (FileChannel outChannel = FileChannel.open(outputFile, StandardOpenOption.WRITE)) {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[chunkFiles.size()];
+            for (int i = 0; i < chunkFiles.size(); i++) {
+                Path chunkFile = chunkFiles.get(i);
+                long position = offsets[i];
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        long written = transferChunkAt(chunkFile, outChannel, position);
+                        progress.accept(totalWritten.addAndGet(written));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, fileMergeIoExecutor);
+            }
+
+            // allOf 在全部任务结束后才完成, 关闭通道时不会有仍在写入的任务
+            try {
+                CompletableFuture.allOf(futures).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                throw new IOException("并行合并失败: " + e.getCause().getMessage(), e.getCause());
+            }
+            outChannel.force(false);
+        }
+        return totalWritten.get();
     }
 
-    private void mergeChunksToFile(Path tempDir, Path outputFile, String fileName,
-            int chunksCount, Long expectedSize) throws IOException {
+    private long transferChunkAt(Path chunkFile, FileChannel outChannel, long position) throws IOException {
+        try (FileChannel inChannel = FileChannel.open(chunkFile, StandardOpenOption.READ)) {
+            long chunkSize = inChannel.size();
+            long transferred = 0;
+            while (transferred < chunkSize) {
+                long count = outChannel.transferFrom(inChannel, position + transferred, chunkSize - transferred);
+                if (count <= 0) {
+                    throw new IOException("分片传输中断: " + chunkFile.getFileName());
+                }
+                transferred += count;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * 基于FileChannel.transferTo的零拷贝合并（Linux下走sendfile/copy_file_range）
+     *
+     * @return 写入的总字节数
+     */
+    private long mergeChunksByChannel(List<Path> chunkFiles, Path outputFile, LongConsumer progress)
+            throws IOException {
+        long totalWritten = 0;
+
+        try (FileChannel outChannel = FileChannel.open(outputFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            for (int i = 0; i < chunkFiles.size(); i++) {
+                Path chunkFile = chunkFiles.get(i);
+
+                try (FileChannel inChannel = FileChannel.open(chunkFile, StandardOpenOption.READ)) {
+                    long chunkSize = inChannel.size();
+                    long transferred = 0;
+                    // transferTo单次调用可能只传输部分数据, 需循环直到分片写完
+                    while (transferred < chunkSize) {
+                        long count = inChannel.transferTo(transferred, chunkSize - transferred, outChannel);
+                        if (count <= 0) {
+                            throw new IOException("分片传输中断: " + chunkFile.getFileName());
+                        }
+                        transferred += count;
+                        progress.accept(totalWritten + transferred);
+                    }
+                    totalWritten += transferred;
+                }
+
+                log.debug("已合并分片: {}/{} (已写入: {}字节)", i + 1, chunkFiles.size(), totalWritten);
+            }
+
+            outChannel.force(false);
+        }
+        return totalWritten;
+    }
+
+    /**
+     * 基于缓冲流的合并（兼容模式）
+     *
+     * @return 写入的总字节数
+     */
+    private long mergeChunksByStream(List<Path> chunkFiles, Path outputFile, LongConsumer progress)
+            throws IOException {
+        long totalWritten = 0;
+
         try (OutputStream outputStream = Files.newOutputStream(outputFile,
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
                 BufferedOutputStream bufferedOut = new BufferedOutputStream(outputStream, 64 * 1024)) {
 
-            long totalWritten = 0;
             byte[] buffer = new byte[64 * 1024]; // 64KB 缓冲区
 
-            for (int i = 0; i < chunksCount; i++) {
-                String chunkFileName = String.format("%s.%d.%d.part", fileName, i, chunksCount);
-                Path chunkFile = tempDir.resolve(chunkFileName);
-
-                try (InputStream inputStream = Files.newInputStream(chunkFile);
+            for (int i = 0; i < chunkFiles.size(); i++) {
+                try (InputStream inputStream = Files.newInputStream(chunkFiles.get(i));
                         BufferedInputStream bufferedIn = new BufferedInputStream(inputStream, 64 * 1024)) {
 
                     int bytesRead;
                     while ((bytesRead = bufferedIn.read(buffer)) != -1) {
                         bufferedOut.write(buffer, 0, bytesRead);
                         totalWritten += bytesRead;
+                        progress.accept(totalWritten);
                     }
                 }
 
-                log.debug("已合并分片: {}/{} (已写入: {}字节)", i + 1, chunksCount, totalWritten);
+                log.debug("已合并分片: {}/{} (已写入: {}字节)", i + 1, chunkFiles.size(), totalWritten);
             }
 
             bufferedOut.flush();
         }
+        return totalWritten;
+    }
+
+    private void logMergeThroughput(String engine, String fileName, long bytes, long elapsedNanos) {
+        double elapsedMillis = elapsedNanos / 1_000_000.0;
+        double throughput = elapsedNanos > 0 ? (bytes / 1024.0 / 1024.0) / (elapsedNanos / 1_000_000_000.0) : 0;
+        log.info("分片合并统计: engine={}, file={}, bytes={}, 耗时={}ms, 吞吐={} MB/s",
+                engine, fileName, bytes, String.format("%.1f", elapsedMillis), String.format("%.2f", throughput));
     }
 
     // 异步清理临时文件
-    private void cleanTempChunksAsync(Path tempDir, String fileName, int chunksCount) {
+    private void cleanTempChunksAsync(List<Path> chunkFiles) {
         CompletableFuture.runAsync(() -> {
             try {
-                cleanTempChunks(tempDir, fileName, chunksCount);
+                cleanTempChunks(chunkFiles);
             } catch (Exception e) {
                 log.warn("清理临时分片文件失败: {}", e.getMessage());
             }
         });
     }
 
-    private void saveFileEntity(User user, String fileName, Path filePath, Long size, String relativePath)
-            throws IOException {
+    private File saveFileEntity(User user, String fileName, Path filePath, Long size, String relativePath,
+            String hash, String thumbnailPath) {
         String type = FileTypeChecker.getFileTypeDescription(fileName);
 
+        Long parentId = fileTreeService.resolveFolder(user, relativePath);
         File fileEntity = new File(fileName, filePath.toString(), null, type, user);
         fileEntity.setSize(size);
         fileEntity.setStatus(FileStatus.ACTIVE);
-        fileEntity.setRelativePath(relativePath);
-        fileEntity.setThumbnailPath(thumbnailService.generateThumbnail(filePath, user.getId()));
-
-        // 暂时设置临时哈希，后续可异步计算真实哈希
-        fileEntity.setHash(generateTempHash(fileName, size));
-
-        fileRepository.save(fileEntity);
-    }
+        fileEntity.setThumbnailPath(thumbnailPath);
+        fileEntity.setHash(hash);
 
-    private String generateTempHash(String fileName, Long size) {
-        return "temp_" + fileName.hashCode() + "_" + size;
+        // 物理文件可能覆盖了同路径的旧文件
+        fileCacheService.invalidate(fileEntity.getPath());
+        // 同目录下已有同名文件时自动追加序号
+        return fileTreeService.create(fileEntity, parentId, true);
     }
 
     @Override
@@ -257,15 +902,11 @@ public class FileServiceImpl implements FileService {
         return avatarUrl;
     }
 
-    private void cleanTempChunks(Path tempDir, String fileName, int chunksCount) {
+    private void cleanTempChunks(List<Path> chunkFiles) {
         log.debug("正在异步删除临时文件");
-        // 遍历分片数量
-        for (int i = 0; i < chunksCount; i++) {
+        // 遍历分片文件
+        for (Path chunkFile : chunkFiles) {
             try {
-                // 构造分片文件名
-                String chunkFileName = String.format("%s.%d.%d.part", fileName, i, chunksCount);
-                // 构造分片文件路径
-                Path chunkFile = tempDir.resolve(chunkFileName);
                 // 删除分片文件
                 if (!Files.deleteIfExists(chunkFile)) {
                     log.warn("删除分片文件失败：{}", chunkFile.getFileName());
@@ -279,42 +920,65 @@ public class FileServiceImpl implements FileService {
 
     @Override
     public void deleteFile(User user, Long fileId) {
-        log.debug("删除文件: {}", fileId);
-        File file = fileRepository.findByUserAndId(user, fileId)
-                .orElseThrow(() -> new CustomException(ErrorOperationStatus.FILE_NOT_FOUND));
-        if (file.getType().equals("文件夹")) {
-            fileRepository.findByRelativePathStartingWith(file.getRelativePath()).forEach(f -> {
-                f.setStatus(FileStatus.DELETED);
-                fileRepository.save(f);
-            });
-            log.debug("删除文件夹及其内容成功");
+        deleteFiles(user, List.of(fileId));
+    }
+
+    @Override
+    public int deleteFiles(User user, List<Long> fileIds) {
+        checkBulkSize(fileIds);
+        log.debug("删除文件: {}", fileIds);
+        // 选中项连同子树在一个事务中由一条 UPDATE 移入回收站
+        List<Object[]> affected = fileTreeService.trash(user, fileIds);
+        for (Object[] row : affected) {
+            signedUrlService.evict((Long) row[0]);
+            fileCacheService.invalidate((String) row[1]);
+        }
+        log.debug("删除文件成功: 共{}项", affected.size());
+        return affected.size();
+    }
+
+    @Override
+    public int restoreFiles(User user, List<Long> fileIds) {
+        checkBulkSize(fileIds);
+        log.debug("还原文件: {}", fileIds);
+        return fileTreeService.restore(user, fileIds);
+    }
+
+    @Override
+    public void moveFiles(User user, List<Long> fileIds, String path) {
+        checkBulkSize(fileIds);
+        log.debug("移动文件: fileIds={}, 目标路径={}", fileIds, path);
+        fileTreeService.move(user, fileIds, fileTreeService.resolveFolder(user, path));
+    }
+
+    private void checkBulkSize(List<Long> fileIds) {
+        if (fileIds == null || fileIds.isEmpty() || fileIds.size() > bulkMaxItems) {
+            throw new IllegalArgumentException(String.format("批量操作项数无效: %d, 上限: %d",
+                    fileIds == null ? 0 : fileIds.size(), bulkMaxItems));
         }
-        file.setStatus(FileStatus.DELETED);
-        fileRepository.save(file);
-        log.debug("删除文件成功");
+    }
 
+    @Override
+    public long getFileSize(User user, Long fileId) {
+        return fileTreeService.subtreeSize(user, fileId);
     }
 
     @Override
-    public List<File> searchFiles(User user, String searchQuery) {
+    public List<FileItem> searchFiles(User user, String searchQuery) {
         if (user == null) {
             log.error(ErrorOperationStatus.USER_NOT_FOUND.getMsg());
             throw new CustomException(ErrorOperationStatus.USER_NOT_FOUND);
         }
         log.debug("搜索文件: 用户ID={}, 查询={}", user.getId(), searchQuery);
 
-        // 获取用户所有文件
-        List<File> matchedFiles = fileRepository.searchByUserAndName(user, searchQuery)
-                .stream()
-                .filter(file -> file.getStatus() == FileStatus.ACTIVE)
-                .collect(Collectors.toList());
+        List<FileItem> matchedFiles = fileRepository.searchItems(user, searchQuery, FileStatus.ACTIVE);
         log.debug("用户搜索匹配文件数: {}", matchedFiles.size());
 
         return matchedFiles;
     }
 
     @Override
-    public List<File> getFileList(User user, String path, String category, String sort) {
+    public List<FileItem> getFileList(User user, String path, String category, String sort) {
         if (user == null) {
             log.error(ErrorOperationStatus.USER_NOT_FOUND.getMsg());
             throw new CustomException(ErrorOperationStatus.USER_NOT_FOUND);
@@ -322,51 +986,57 @@ public class FileServiceImpl implements FileService {
 
         log.info("获取文件列表: 用户ID={}, 路径={}, 分类={}, 排序={}", user.getId(), path, category, sort);
 
-        // 获取用户所有文件
-        List<File> allFiles = fileRepository.findByUser(user);
-        log.info("用户总文件数: {}", allFiles.size());
-
-        List<File> filteredFiles = new ArrayList<>();
-
-        filteredFiles = allFiles.stream()
-                .filter(file -> {
-                    String type = FileTypeChecker.getFileCategory(FileTypeChecker.getFileTypeFromName(file.getName()));
-                    switch (category) {
-                        case "my-files":
-                            return getFile(file.getId()).getRelativePath().equals(path)
-                                    && file.getStatus() == FileStatus.ACTIVE;
-                        case "trash":
-                            return file.getStatus() == FileStatus.DELETED;
-                        default:
-                            return category.equals(type) && file.getStatus() == FileStatus.ACTIVE
-                                    && !file.getType().equals("文件夹");
-                    }
-                })
-                .peek(file -> log.debug("文件匹配: {}", file.getName()))
-                .collect(Collectors.toList());
-        log.info("过滤后文件数: {}", filteredFiles.size());
-        // 根据排序参数对文件列表进行排序
-        sortFiles(filteredFiles, sort);
-        return filteredFiles;
+        // 目录、状态、分类筛选及排序均在数据库完成
+        List<FileItem> files = fileRepository.findItems(
+                FileSpecifications.listing(user, resolveListFolder(user, path, category), category),
+                ListSort.parse(sort).toSort(), 0);
+        log.info("过滤后文件数: {}", files.size());
+        return files;
+    }
+
+    @Override
+    public FilePage<FileItem> getFilePage(User user, String path, String category, String sort, String cursor,
+            int size) {
+        if (user == null) {
+            log.error(ErrorOperationStatus.USER_NOT_FOUND.getMsg());
+            throw new CustomException(ErrorOperationStatus.USER_NOT_FOUND);
+        }
+        int pageSize = Math.max(1, Math.min(size, listMaxPageSize));
+        ListSort listSort = ListSort.parse(sort);
+        Specification<File> spec = FileSpecifications.listing(user, resolveListFolder(user, path, category), category)
+                .and(FileSpecifications.after(listSort, cursor));
+
+        // 多取一行判断是否还有下一页, 不执行 count 查询
+        List<FileItem> rows = fileRepository.findItems(spec, listSort.toSort(), pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<FileItem> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? FileSpecifications.cursorOf(listSort, items.get(items.size() - 1)) : null;
+        log.debug("分页获取文件列表: 用户ID={}, 路径={}, 分类={}, 本页={}, 还有更多={}", user.getId(), path, category,
+                items.size(), hasMore);
+        return new FilePage<>(items, nextCursor);
+    }
+
+    // 目录列表时将路径解析为目录ID, 分类视图与回收站不按目录筛选
+    private Long resolveListFolder(User user, String path, String category) {
+        return FileSpecifications.CATEGORY_MY_FILES.equals(category) ? fileTreeService.resolveFolder(user, path)
+                : null;
     }
 
     @Override
     public void createFolder(User user, String folderName, String path) throws IOException {
         log.debug("创建文件夹: {}", folderName);
-        if (fileRepository.findByUserAndName(user, folderName) != null) {
-            throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
-        }
-        File file = new File(folderName, fileUtil.getUserPath(user.getId()) + "/" + folderName, path, "文件夹",
+        File file = new File(folderName, fileUtil.getUserPath(user.getId()) + "/" + folderName, null, "文件夹",
                 user);
-        fileRepository.save(file);
+        // 同名检查为 (user_id, parent_id, file_name) 唯一索引查找
+        fileTreeService.create(file, fileTreeService.resolveFolder(user, path), false);
         log.debug("创建文件夹成功");
     }
 
     @Override
     public void createFile(User user, String fileName, String path, String content) throws IOException {
         log.debug("创建文本文件: {}", fileName);
-        File file = new File(fileName, fileUtil.getUserPath(user.getId()) + "/" + fileName, path, "文本文件", user);
-        fileRepository.save(file);
+        File file = new File(fileName, fileUtil.getUserPath(user.getId()) + "/" + fileName, null, "文本文件", user);
+        fileTreeService.create(file, fileTreeService.resolveFolder(user, path), false);
         log.debug("创建文本文件成功");
     }
 
@@ -377,12 +1047,13 @@ public class FileServiceImpl implements FileService {
     }
 
     @Override
-    public Resource downloadFile(User user, Long fileId, String fileName) throws IOException {
+    public File downloadFile(User user, Long fileId, String fileName) throws IOException {
         log.debug("开始下载文件: filename={}, userId={}", fileName, user.getId());
 
         try {
             // 在数据库中查找文件
             File fileEntity = fileRepository.findByUserAndId(user, fileId)
+                    .filter(f -> f.getStatus() == FileStatus.ACTIVE)
                     .orElseThrow(() -> new CustomException(ErrorOperationStatus.FILE_NOT_FOUND));
 
             // 检查文件类型
@@ -394,19 +1065,12 @@ public class FileServiceImpl implements FileService {
             Path filePath = Path.of(fileEntity.getPath());
 
             // 检查文件是否存在
-            if (!Files.exists(filePath)) {
-                throw new CustomException(ErrorOperationStatus.FILE_NOT_FOUND);
-            }
-
-            // 创建文件资源
-            Resource resource = new FileSystemResource(filePath.toFile());
-
-            if (!resource.exists()) {
+            if (!Files.isRegularFile(filePath)) {
                 throw new CustomException(ErrorOperationStatus.FILE_NOT_FOUND);
             }
 
             log.debug("文件下载准备完成: {}", fileEntity.getName());
-            return resource;
+            return fileEntity;
 
         } catch (Exception e) {
             log.error("文件下载失败: filename={}, error={}", fileName, e.getMessage(), e);
@@ -425,48 +1089,11 @@ public class FileServiceImpl implements FileService {
             throw new CustomException(ErrorOperationStatus.EMPTY_FILE);
         }
 
-        // 更新文件名
-        file.setName(newFileName);
-        fileRepository.save(file);
+        // 更新文件名, 子节点通过 parentId 关联, 无需改写
+        fileTreeService.rename(file, newFileName);
+        fileCacheService.invalidate(file.getPath());
+        signedUrlService.evict(fileId);
         log.debug("更新文件名成功: {}", newFileName);
         return true;
     }
-
-    /**
-     * 根据排序参数对文件列表进行排序
-     *
-     * @param files 文件列表
-     * @param sort  排序参数
-     */
-    private void sortFiles(List<File> files, String sort) {
-        if (sort == null || sort.isEmpty()) {
-            return;
-        }
-
-        switch (sort) {
-            case "name-asc":
-                files.sort(Comparator.comparing(File::getName));
-                break;
-            case "name-desc":
-                files.sort(Comparator.comparing(File::getName).reversed());
-                break;
-            case "time-asc":
-                files.sort(Comparator.comparing(File::getCreateTime));
-                break;
-            case "time-desc":
-                files.sort(Comparator.comparing(File::getCreateTime).reversed());
-                break;
-            case "size-asc":
-                files.sort(Comparator.comparing(File::getSize));
-                break;
-            case "size-desc":
-                files.sort(Comparator.comparing(File::getSize).reversed());
-                break;
-            default:
-                // 默认按创建时间降序排序
-                files.sort(Comparator.comparing(File::getCreateTime).reversed());
-                break;
-        }
-    }
-
 }
@@ -0,0 +1,226 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.repository.FileClosureRepository;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.service.FileTreeService;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 目录树
+ * 每个节点记录 parentId, 层级关系冗余存放于 file_closure; 同名检查、路径解析均为 (user_id, parent_id, file_name) 索引查找
+ */
+@Service
+@RequiredArgsConstructor
+public class FileTreeServiceImpl implements FileTreeService {
+
+    private static final String FOLDER_TYPE = "文件夹";
+
+    private final FileRepository fileRepository;
+    private final FileClosureRepository fileClosureRepository;
+    private final Logger log = LogUtil.getLogger();
+
+    @Override
+    public Long resolveFolder(User user, String path) {
+        if (path == null || !(path.endsWith("/") ? path : path + "/").startsWith(File.ROOT_PATH)) {
+            throw new CustomException(ErrorOperationStatus.FILE_PATH_INVALID);
+        }
+        Long folderId = File.ROOT_ID;
+        for (String name : path.substring(Math.min(path.length(), File.ROOT_PATH.length())).split("/")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            List<Long> ids = fileRepository.findLiveFolderIds(user, folderId, name);
+            if (ids.isEmpty()) {
+                log.debug("目录不存在: userId={}, path={}", user.getId(), path);
+                throw new CustomException(ErrorOperationStatus.FILE_PATH_INVALID);
+            }
+            folderId = ids.get(0);
+        }
+        return folderId;
+    }
+
+    @Override
+    @Transactional
+    public File create(File file, Long parentId, boolean renameOnConflict) {
+        checkName(file.getName());
+        file.setParentId(parentId);
+        if (fileRepository.existsByUserAndParentIdAndNameAndLiveTrue(file.getUser(), parentId, file.getName())) {
+            if (!renameOnConflict) {
+                throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
+            }
+            file.setName(uniqueName(file.getUser(), parentId, file.getName()));
+        }
+        try {
+            File saved = fileRepository.saveAndFlush(file);
+            fileClosureRepository.insertNode(saved.getId(), parentId);
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            // 并发创建了同名节点
+            log.warn("同名节点已存在: parentId={}, name={}", parentId, file.getName());
+            throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void rename(File file, String newName) {
+        checkName(newName);
+        if (newName.equals(file.getName())) {
+            return;
+        }
+        if (fileRepository.existsByUserAndParentIdAndNameAndLiveTrue(file.getUser(), file.getParentId(), newName)) {
+            throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
+        }
+        file.setName(newName);
+        fileRepository.saveAndFlush(file);
+    }
+
+    @Override
+    @Transactional
+    public void move(User user, List<Long> fileIds, Long targetFolderId) {
+        Set<Long> roots = topLevel(user, fileIds, FileStatus.ACTIVE);
+        if (targetFolderId != File.ROOT_ID) {
+            File target = findActive(user, targetFolderId);
+            // 目标须为目录, 且不能是选中项自身或其子目录
+            if (!FOLDER_TYPE.equals(target.getType())
+                    || fileClosureRepository.existsByAncestorIdInAndDescendantId(roots, targetFolderId)) {
+                throw new CustomException(ErrorOperationStatus.FILE_PATH_INVALID);
+            }
+        }
+        if (fileRepository.countNameConflicts(user, targetFolderId, roots) > 0) {
+            throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
+        }
+
+        List<Long> ids = new ArrayList<>(roots);
+        fileClosureRepository.detachSubtrees(ids);
+        fileClosureRepository.attachSubtrees(ids, targetFolderId);
+        try {
+            fileRepository.updateParent(ids, targetFolderId);
+        } catch (DataIntegrityViolationException e) {
+            // 选中项之间重名
+            throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
+        }
+        log.debug("移动节点: fileIds={}, 目标目录={}", ids, targetFolderId);
+    }
+
+    @Override
+    @Transactional
+    public List<Object[]> trash(User user, List<Long> fileIds) {
+        Set<Long> roots = topLevel(user, fileIds, null);
+        List<Object[]> affected = fileRepository.findSubtreePaths(roots, FileStatus.ACTIVE);
+        fileRepository.trashSubtrees(roots, FileStatus.DELETED, UUID.randomUUID().toString(), LocalDateTime.now());
+        log.debug("移入回收站: 选中{}项, 节点数={}", roots.size(), affected.size());
+        return affected;
+    }
+
+    @Override
+    @Transactional
+    public int restore(User user, List<Long> fileIds) {
+        Set<Long> selected = owned(user, fileIds, null);
+        // 按删除批次分组: 选中项只带回同一次删除的后代, 此前单独删除的节点仍留在回收站
+        // 选中项互相嵌套时不去除下级, 下级按自身批次还原
+        Map<String, List<Long>> byBatch = new HashMap<>();
+        for (Object[] row : fileRepository.findTrashBatches(selected, FileStatus.DELETED)) {
+            byBatch.computeIfAbsent(row[1] == null ? "" : (String) row[1], b -> new ArrayList<>()).add((Long) row[0]);
+        }
+        try {
+            int restored = 0;
+            LocalDateTime now = LocalDateTime.now();
+            for (Map.Entry<String, List<Long>> batch : byBatch.entrySet()) {
+                restored += fileRepository.restoreSubtrees(batch.getValue(), batch.getKey(), FileStatus.ACTIVE,
+                        FileStatus.DELETED, now);
+            }
+            log.debug("从回收站还原: 选中{}项, 批次数={}, 节点数={}", selected.size(), byBatch.size(), restored);
+            return restored;
+        } catch (DataIntegrityViolationException e) {
+            // 原目录中已有同名文件
+            throw new CustomException(ErrorOperationStatus.FILE_EXISTS);
+        }
+    }
+
+    @Override
+    public long subtreeSize(User user, Long fileId) {
+        findActive(user, fileId);
+        return fileRepository.sumSubtreeSize(fileId, FileStatus.ACTIVE);
+    }
+
+    @Override
+    public List<File> listDescendants(File folder) {
+        return fileRepository.findDescendants(folder.getId(), FileStatus.ACTIVE);
+    }
+
+    /**
+     * 校验选中项均属于该用户(status 非空时还须为该状态), 并去掉位于其他选中项子树内的节点
+     */
+    private Set<Long> topLevel(User user, List<Long> fileIds, FileStatus status) {
+        Set<Long> ids = owned(user, fileIds, status);
+        if (ids.size() > 1) {
+            fileClosureRepository.findNested(ids).forEach(ids::remove);
+        }
+        return ids;
+    }
+
+    /**
+     * 校验选中项均属于该用户(status 非空时还须为该状态)
+     */
+    private Set<Long> owned(User user, List<Long> fileIds, FileStatus status) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            throw new IllegalArgumentException("未选择文件");
+        }
+        Set<Long> ids = new HashSet<>(fileIds);
+        long owned = status == null ? fileRepository.countByUserAndIdIn(user, ids)
+                : fileRepository.countByUserAndIdInAndStatus(user, ids, status);
+        if (owned != ids.size()) {
+            throw new CustomException(ErrorOperationStatus.FILE_NOT_FOUND);
+        }
+        return ids;
+    }
+
+    private File findActive(User user, Long fileId) {
+        return fileRepository.findByUserAndId(user, fileId)
+                .filter(f -> f.getStatus() == FileStatus.ACTIVE)
+                .orElseThrow(() -> new CustomException(ErrorOperationStatus.FILE_NOT_FOUND));
+    }
+
+    // 名称中不能含路径分隔符, 否则无法按路径解析
+    private void checkName(String name) {
+        if (name == null || name.isBlank() || name.indexOf('/') >= 0) {
+            throw new CustomException(ErrorOperationStatus.FILE_PATH_INVALID);
+        }
+    }
+
+    /**
+     * 同名时在扩展名前追加序号: a.txt -> a (1).txt
+     */
+    private String uniqueName(User user, Long parentId, String name) {
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        for (int n = 1;; n++) {
+            String candidate = stem + " (" + n + ")" + ext;
+            if (!fileRepository.existsByUserAndParentIdAndNameAndLiveTrue(user, parentId, candidate)) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.dto.MergeJob;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.UploadSession;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.service.FileService;
+import cn.lmao.cloudown.service.MergeJobService;
+import cn.lmao.cloudown.service.UploadSessionService;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class MergeJobServiceImpl implements MergeJobService {
+
+    private final FileService fileService;
+    private final UploadSessionService uploadSessionService;
+    private final ThreadPoolTaskExecutor fileMergeTaskExecutor;
+    private final Logger log = LogUtil.getLogger();
+
+    // 任务ID -> 任务
+    private final Map<String, MergeJob> jobs = new ConcurrentHashMap<>();
+    // 会话ID -> 最近一次任务, 防止重复提交同一会话的合并
+    private final Map<String, MergeJob> sessionJobs = new ConcurrentHashMap<>();
+
+    // 已结束任务的保留时长, 超时后不再可查询
+    @Value("${file.merge.job-retention:3600000}")
+    private long jobRetentionMillis;
+
+    @Override
+    public MergeJob submit(User user, String sessionId, String path, String merkleRoot) {
+        // 会话不存在或分片未齐时直接拒绝, 无需进入队列
+        UploadSession session = uploadSessionService.getActiveSession(user.getId(), sessionId);
+        if (!uploadSessionService.isAllChunksReceived(session)) {
+            throw new IllegalArgumentException(String.format("分片未全部上传，期望: %d, 实际: %d",
+                    session.getTotalChunks(), uploadSessionService.getReceivedChunks(session).length));
+        }
+
+        MergeJob job;
+        synchronized (sessionJobs) {
+            MergeJob current = sessionJobs.get(sessionId);
+            if (current != null && !current.isFinished()) {
+                log.info("合并任务已在进行中: session={}, job={}", sessionId, current.getId());
+                return current;
+            }
+            job = new MergeJob(sessionId, user.getId(), session.getTotalSize());
+            sessionJobs.put(sessionId, job);
+            jobs.put(job.getId(), job);
+        }
+
+        try {
+            fileMergeTaskExecutor.execute(() -> runJob(job, user, path, merkleRoot));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            sessionJobs.remove(sessionId, job);
+            log.warn("合并队列已满, 拒绝任务: session={}", sessionId);
+            throw new CustomException(ErrorOperationStatus.MERGE_QUEUE_FULL);
+        }
+
+        log.info("合并任务已提交: session={}, job={}", sessionId, job.getId());
+        return job;
+    }
+
+    @Override
+    public MergeJob getJob(Long userId, String jobId) {
+        MergeJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            throw new CustomException(ErrorOperationStatus.MERGE_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private void runJob(MergeJob job, User user, String path, String merkleRoot) {
+        long startTime = System.currentTimeMillis();
+        try {
+            File file = fileService.mergeFile(user, job.getSessionId(), path, merkleRoot, job);
+            job.complete(file.getId());
+            log.info("合并任务完成: job={}, fileId={} (耗时: {}ms)", job.getId(), file.getId(),
+                    System.currentTimeMillis() - startTime);
+        } catch (CustomException e) {
+            job.fail(e.getCode(), e.getMsg());
+            log.warn("合并任务失败: job={}, error={}", job.getId(), e.getMessage());
+        } catch (Exception e) {
+            job.fail(ErrorOperationStatus.FILE_MERGE_FAILED);
+            log.error("合并任务失败: job={}, session={}, error={}", job.getId(), job.getSessionId(),
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定期清理已结束的任务
+     */
+    @Scheduled(fixedDelayString = "${file.merge.job-sweep-interval:300000}")
+    public void evictFinishedJobs() {
+        LocalDateTime deadline = LocalDateTime.now().minusNanos(jobRetentionMillis * 1_000_000);
+        jobs.values().removeIf(job -> {
+            if (job.isFinished() && job.getFinishTime().isBefore(deadline)) {
+                sessionJobs.remove(job.getSessionId(), job);
+                return true;
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntSupplier;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.Striped;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.repository.UserRepository;
+import cn.lmao.cloudown.service.QuotaService;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 存储容量账本
+ * 数据库条件更新(used + reserved + n <= total)是唯一的准入依据, 并发合并/秒传不会丢失更新或超额;
+ * 内存中按用户缓存可用余量, 余量明显不足的请求直接拒绝, 无需访问数据库
+ */
+@Service
+@RequiredArgsConstructor
+public class QuotaServiceImpl implements QuotaService {
+
+    private final UserRepository userRepository;
+    private final Logger log = LogUtil.getLogger();
+
+    // 按用户分段加锁, 保证同一节点内内存余量与数据库的变更顺序一致
+    private final Striped<Lock> userLocks = Striped.lock(64);
+    private final Map<Long, Headroom> headrooms = new ConcurrentHashMap<>();
+
+    // 内存余量的有效期, 过期后重新从数据库加载(其他节点的变更在此时间内可能不可见)
+    @Value("${file.quota.cache-ttl:30000}")
+    private long cacheTtlMillis;
+
+    private static final class Headroom {
+        private long available;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private Headroom(long available) {
+            this.available = available;
+        }
+    }
+
+    @Override
+    public void reserve(Long userId, long bytes) {
+        admit(userId, bytes, () -> userRepository.reserveCapacity(userId, bytes));
+    }
+
+    @Override
+    public void commit(Long userId, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        // 预留时余量已扣减, 转为已用容量不影响余量
+        userRepository.commitReservedCapacity(userId, bytes);
+    }
+
+    @Override
+    public void release(Long userId, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            userRepository.releaseReservedCapacity(userId, bytes);
+            adjust(userId, bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void charge(Long userId, long bytes) {
+        admit(userId, bytes, () -> userRepository.addUsedCapacity(userId, bytes));
+    }
+
+    @Override
+    public void refund(Long userId, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            userRepository.subtractUsedCapacity(userId, bytes);
+            adjust(userId, bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit(Long userId, long bytes, IntSupplier update) {
+        if (bytes <= 0) {
+            return;
+        }
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            Headroom headroom = headrooms.get(userId);
+            boolean fresh = headroom != null && System.currentTimeMillis() - headroom.loadedAt < cacheTtlMillis;
+            if (fresh && headroom.available < bytes) {
+                log.debug("容量不足(内存余量): userId={}, 可用={}, 需要={}", userId, headroom.available, bytes);
+                throw new CustomException(ErrorOperationStatus.STORAGE_QUOTA_EXHAUSTED);
+            }
+
+            if (update.getAsInt() == 0) {
+                // 条件更新失败, 以数据库为准刷新余量
+                reload(userId);
+                log.debug("容量不足: userId={}, 需要={}", userId, bytes);
+                throw new CustomException(ErrorOperationStatus.STORAGE_QUOTA_EXHAUSTED);
+            }
+
+            if (fresh) {
+                headroom.available -= bytes;
+            } else {
+                reload(userId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 调用方需持有用户锁
+    private void adjust(Long userId, long delta) {
+        Headroom headroom = headrooms.get(userId);
+        if (headroom != null) {
+            headroom.available += delta;
+        }
+    }
+
+    // 调用方需持有用户锁
+    private void reload(Long userId) {
+        Long available = userRepository.findAvailableCapacity(userId);
+        if (available == null) {
+            headrooms.remove(userId);
+        } else {
+            headrooms.put(userId, new Headroom(available));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.dto.SignedUrl;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.model.enums.UserRole;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.service.SignedUrlService;
+import cn.lmao.cloudown.util.LogUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 签名下载链接: /dl/{fileId}/{fileName}?u=用户ID&r=角色&e=过期时间&s=签名
+ * 签名为 HMAC-SHA256(fileId:userId:role:expires), 角色随链接携带用于限速, 访问时无需查询用户
+ */
+@Service
+@RequiredArgsConstructor
+public class SignedUrlServiceImpl implements SignedUrlService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final FileRepository fileRepository;
+    private final Logger log = LogUtil.getLogger();
+
+    // 签名密钥, 未配置时沿用 JWT 密钥
+    @Value("${file.download.url.secret:${jwt.secret}}")
+    private String secret;
+
+    // 链接有效期
+    @Value("${file.download.url.ttl:1h}")
+    private Duration ttl;
+
+    // 文件元数据缓存时间, 同一链接被反复请求(如视频拖动)时不重复查库
+    @Value("${file.download.url.metadata-ttl:30s}")
+    private Duration metadataTtl;
+
+    private SecretKeySpec key;
+    private Cache<Long, File> files;
+
+    // Mac 实例非线程安全, 每个线程复用一个
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @PostConstruct
+    public void init() {
+        key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        files = CacheBuilder.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(metadataTtl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        log.info("签名下载链接: 有效期={}, 元数据缓存={}", ttl, metadataTtl);
+    }
+
+    @Override
+    public SignedUrl createUrl(User user, File file, boolean inline) {
+        UserRole role = UserRole.of(user.getRole() == null ? null : user.getRole().getName());
+        long expires = System.currentTimeMillis() / 1000 + ttl.toSeconds();
+        UriComponentsBuilder builder = UriComponentsBuilder.fromPath("/dl/{fileId}/{fileName}")
+                .queryParam("u", user.getId())
+                .queryParam("r", role.name())
+                .queryParam("e", expires)
+                .queryParam("s", sign(file.getId(), user.getId(), role, expires));
+        if (inline) {
+            builder.queryParam("inline", true);
+        }
+        String url = builder.encode().buildAndExpand(file.getId(), file.getName()).toUriString();
+        log.debug("生成下载链接: fileId={}, userId={}, expires={}", file.getId(), user.getId(), expires);
+        return new SignedUrl(url, expires);
+    }
+
+    @Override
+    public File resolve(Long fileId, Long userId, UserRole role, long expires, String signature) {
+        if (fileId == null || userId == null || signature == null) {
+            throw new CustomException(ErrorOperationStatus.DOWNLOAD_URL_INVALID);
+        }
+        byte[] expected = sign(fileId, userId, role, expires).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII))) {
+            throw new CustomException(ErrorOperationStatus.DOWNLOAD_URL_INVALID);
+        }
+        if (expires < System.currentTimeMillis() / 1000) {
+            throw new CustomException(ErrorOperationStatus.DOWNLOAD_URL_EXPIRED);
+        }
+
+        File file = files.getIfPresent(fileId);
+        if (file == null) {
+            file = fileRepository.findById(fileId)
+                    .filter(f -> f.getStatus() == FileStatus.ACTIVE && !"文件夹".equals(f.getType()))
+                    .orElseThrow(() -> new CustomException(ErrorOperationStatus.FILE_NOT_FOUND));
+            files.put(fileId, file);
+        }
+        if (file.getUser() == null || !userId.equals(file.getUser().getId())) {
+            throw new CustomException(ErrorOperationStatus.DOWNLOAD_URL_INVALID);
+        }
+        return file;
+    }
+
+    @Override
+    public void evict(Long fileId) {
+        files.invalidate(fileId);
+    }
+
+    private String sign(Long fileId, Long userId, UserRole role, long expires) {
+        String payload = fileId + ":" + userId + ":" + role.name() + ":" + expires;
+        byte[] digest = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
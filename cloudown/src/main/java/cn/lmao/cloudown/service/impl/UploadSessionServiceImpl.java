@@ -0,0 +1,312 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.entity.UploadChunk;
+import cn.lmao.cloudown.model.entity.UploadSession;
+import cn.lmao.cloudown.model.entity.UploadSession.SessionStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.repository.UploadChunkRepository;
+import cn.lmao.cloudown.repository.UploadSessionRepository;
+import cn.lmao.cloudown.service.QuotaService;
+import cn.lmao.cloudown.service.UploadSessionService;
+import cn.lmao.cloudown.util.FileUtil;
+import cn.lmao.cloudown.util.LogUtil;
+import cn.lmao.cloudown.util.MerkleTreeUtil;
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final FileRepository fileRepository;
+    private final FileUtil fileUtil;
+    private final QuotaService quotaService;
+    private final Logger log = LogUtil.getLogger();
+
+    public static final String UPLOAD_MODE_CHUNK = "chunk";
+    public static final String UPLOAD_MODE_DIRECT = "direct";
+    private static final String DIRECT_UPLOAD_SUFFIX = ".uploading";
+
+    // 上传模式: chunk(临时分片+合并) | direct(按偏移直写目标文件, 无需合并)
+    @Value("${file.upload.mode:chunk}")
+    private String uploadMode;
+
+    // 单个分片大小上限; 原始流上传不经过 multipart, 不受 max-file-size 约束
+    @Value("${file.upload.max-chunk-size:64MB}")
+    private DataSize maxChunkSize;
+
+    // 进行中会话的内存缓存, 分片热路径无需每次查库
+    private final Map<String, UploadSession> activeSessions = new ConcurrentHashMap<>();
+
+    @Override
+    public UploadSession openSession(User user, String quickHash, String fileName, long totalSize, long chunkSize,
+            int totalChunks) throws IOException {
+        if (totalSize <= 0 || chunkSize <= 0 || totalChunks <= 0
+                || (totalSize + chunkSize - 1) / chunkSize != totalChunks) {
+            throw new IllegalArgumentException(String.format("无效的分片参数: size=%d, chunkSize=%d, totalChunks=%d",
+                    totalSize, chunkSize, totalChunks));
+        }
+        if (chunkSize > maxChunkSize.toBytes()) {
+            throw new IllegalArgumentException(String.format("分片大小超过上限: chunkSize=%d, 上限=%d",
+                    chunkSize, maxChunkSize.toBytes()));
+        }
+
+        // 1. 同一文件的未完成会话直接恢复
+        UploadSession existing = uploadSessionRepository
+                .findFirstByUserIdAndQuickHashAndStatusOrderByUpdateTimeDesc(user.getId(), quickHash,
+                        SessionStatus.UPLOADING)
+                .orElse(null);
+        if (existing != null && existing.getFileName().equals(fileName)
+                && existing.getTotalSize() == totalSize && existing.getChunkSize() == chunkSize) {
+            log.debug("恢复上传会话: {} (已接收{}个分片)", existing.getId(),
+                    existing.getChunkBitmap().cardinality());
+            return activeSessions.computeIfAbsent(existing.getId(), id -> existing);
+        }
+
+        // 2. 新建会话, 先原子预留容量, 后续分片上传无需再检查配额
+        quotaService.reserve(user.getId(), totalSize);
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString().replace("-", ""));
+        session.setUserId(user.getId());
+        session.setQuickHash(quickHash);
+        session.setFileName(fileName);
+        session.setTotalSize(totalSize);
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks(totalChunks);
+        session.setUploadMode(UPLOAD_MODE_DIRECT.equalsIgnoreCase(uploadMode) ? UPLOAD_MODE_DIRECT : UPLOAD_MODE_CHUNK);
+        session.setReservedBytes(totalSize);
+
+        try {
+            // 直写模式预分配目标文件（稀疏文件）
+            if (UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+                Path targetFile = getTargetPath(session);
+                try (RandomAccessFile raf = new RandomAccessFile(targetFile.toFile(), "rw")) {
+                    raf.setLength(totalSize);
+                }
+                log.debug("已预分配目标文件: {} ({}字节)", targetFile, totalSize);
+            }
+
+            uploadSessionRepository.save(session);
+        } catch (IOException | RuntimeException e) {
+            quotaService.release(user.getId(), totalSize);
+            throw e;
+        }
+        activeSessions.put(session.getId(), session);
+        log.debug("创建上传会话: {} file={}, chunks={}, mode={}", session.getId(), fileName, totalChunks,
+                session.getUploadMode());
+        return session;
+    }
+
+    @Override
+    public UploadSession findResumableSession(Long userId, String quickHash, String fileName, long totalSize) {
+        return uploadSessionRepository
+                .findFirstByUserIdAndQuickHashAndStatusOrderByUpdateTimeDesc(userId, quickHash, SessionStatus.UPLOADING)
+                .filter(s -> s.getFileName().equals(fileName) && s.getTotalSize() == totalSize)
+                .map(s -> activeSessions.computeIfAbsent(s.getId(), id -> s))
+                .orElse(null);
+    }
+
+    @Override
+    public UploadSession getActiveSession(Long userId, String sessionId) {
+        UploadSession session = activeSessions.computeIfAbsent(sessionId,
+                id -> uploadSessionRepository.findByIdAndUserId(id, userId)
+                        .filter(s -> s.getStatus() == SessionStatus.UPLOADING)
+                        .orElse(null));
+        if (session == null || !session.getUserId().equals(userId)
+                || session.getStatus() != SessionStatus.UPLOADING) {
+            throw new CustomException(ErrorOperationStatus.UPLOAD_SESSION_NOT_FOUND);
+        }
+        return session;
+    }
+
+    @Override
+    public void markChunkReceived(UploadSession session, int chunkIndex, byte[] digest, long size) {
+        // 同一会话的位图更新串行化, 保证落库的快照不会被旧快照覆盖
+        synchronized (session) {
+            uploadChunkRepository.save(new UploadChunk(session.getId(), chunkIndex, digest, size));
+            loadChunkDigests(session)[chunkIndex] = digest;
+
+            BitSet bitmap = session.getChunkBitmap();
+            bitmap.set(chunkIndex);
+            byte[] snapshot = bitmap.toByteArray();
+            session.setReceivedChunks(snapshot);
+            uploadSessionRepository.updateReceivedChunks(session.getId(), snapshot, LocalDateTime.now());
+        }
+    }
+
+    @Override
+    public void resetChunks(UploadSession session, List<Integer> chunkIndexes) {
+        if (chunkIndexes.isEmpty()) {
+            return;
+        }
+        synchronized (session) {
+            uploadChunkRepository.deleteChunks(session.getId(), chunkIndexes);
+            byte[][] digests = loadChunkDigests(session);
+            BitSet bitmap = session.getChunkBitmap();
+            for (int chunkIndex : chunkIndexes) {
+                digests[chunkIndex] = null;
+                bitmap.clear(chunkIndex);
+            }
+            byte[] snapshot = bitmap.toByteArray();
+            session.setReceivedChunks(snapshot);
+            uploadSessionRepository.updateReceivedChunks(session.getId(), snapshot, LocalDateTime.now());
+        }
+        log.info("分片已恢复为未接收: session={}, chunks={}", session.getId(), chunkIndexes);
+    }
+
+    @Override
+    public byte[] getChunkDigest(UploadSession session, int chunkIndex) {
+        synchronized (session) {
+            return session.getChunkBitmap().get(chunkIndex) ? loadChunkDigests(session)[chunkIndex] : null;
+        }
+    }
+
+    @Override
+    public String computeMerkleRoot(UploadSession session) {
+        List<byte[]> leaves = new ArrayList<>(session.getTotalChunks());
+        synchronized (session) {
+            byte[][] digests = loadChunkDigests(session);
+            for (byte[] digest : digests) {
+                if (digest == null) {
+                    return null;
+                }
+                leaves.add(digest);
+            }
+        }
+        String root = FileUtil.bytesToHex(MerkleTreeUtil.computeRoot(leaves));
+        session.setMerkleRoot(root);
+        uploadSessionRepository.updateMerkleRoot(session.getId(), root, LocalDateTime.now());
+        return root;
+    }
+
+    @Override
+    public int[] getReceivedChunks(UploadSession session) {
+        synchronized (session) {
+            return session.getChunkBitmap().stream().toArray();
+        }
+    }
+
+    @Override
+    public boolean isAllChunksReceived(UploadSession session) {
+        synchronized (session) {
+            return session.getChunkBitmap().cardinality() == session.getTotalChunks();
+        }
+    }
+
+    @Override
+    public void completeSession(UploadSession session) {
+        session.setStatus(SessionStatus.COMPLETED);
+        uploadSessionRepository.updateStatus(session.getId(), SessionStatus.COMPLETED, LocalDateTime.now());
+        activeSessions.remove(session.getId());
+        log.debug("上传会话已完成: {}", session.getId());
+    }
+
+    @Override
+    public long takeReservation(UploadSession session) {
+        Long reserved = session.getReservedBytes();
+        if (reserved == null || reserved <= 0
+                || uploadSessionRepository.clearReservedBytes(session.getId(), LocalDateTime.now()) == 0) {
+            return 0;
+        }
+        session.setReservedBytes(0L);
+        return reserved;
+    }
+
+    @Override
+    public long abortSession(UploadSession session, SessionStatus status) {
+        session.setStatus(status);
+        uploadSessionRepository.updateStatus(session.getId(), status, LocalDateTime.now());
+        activeSessions.remove(session.getId());
+        quotaService.release(session.getUserId(), takeReservation(session));
+
+        // 删除已上传的数据
+        long reclaimed = 0;
+        try {
+            if (UPLOAD_MODE_DIRECT.equals(session.getUploadMode())) {
+                reclaimed += deleteIfExists(getTargetPath(session));
+            } else {
+                for (int i = 0; i < session.getTotalChunks(); i++) {
+                    reclaimed += deleteIfExists(getChunkPath(session, i));
+                }
+            }
+            // 合并中断留下的最终文件; 已有文件记录引用时(记录已保存但会话未标记完成)保留
+            Path finalFile = getFinalPath(session);
+            if (Files.exists(finalFile)
+                    && !fileRepository.existsByUserIdAndPath(session.getUserId(), finalFile.toString())) {
+                reclaimed += deleteIfExists(finalFile);
+            }
+        } catch (IOException e) {
+            log.warn("清理上传会话数据失败: {}, error={}", session.getId(), e.getMessage());
+        }
+        log.debug("上传会话已中止: {} status={}, 回收{}字节", session.getId(), status, reclaimed);
+        return reclaimed;
+    }
+
+    private static long deleteIfExists(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long size = Files.size(path);
+        return Files.deleteIfExists(path) ? size : 0;
+    }
+
+    // 调用方需持有会话锁
+    private byte[][] loadChunkDigests(UploadSession session) {
+        if (session.getChunkDigests() == null) {
+            byte[][] digests = new byte[session.getTotalChunks()][];
+            for (UploadChunk chunk : uploadChunkRepository.findBySessionId(session.getId())) {
+                if (chunk.getChunkIndex() < digests.length) {
+                    digests[chunk.getChunkIndex()] = chunk.getDigest();
+                }
+            }
+            session.setChunkDigests(digests);
+        }
+        return session.getChunkDigests();
+    }
+
+    @Override
+    public Path getChunkPath(UploadSession session, int chunkIndex) throws IOException {
+        return Path.of(fileUtil.getTempPath(session.getUserId()))
+                .resolve(String.format("%s.%d.part", session.getId(), chunkIndex));
+    }
+
+    @Override
+    public Path getScratchPath(UploadSession session, int chunkIndex) throws IOException {
+        // 同一分片可能被并发重传, 每次接收使用独立的暂存文件; 以会话ID开头, 残留时由临时文件清理回收
+        return Path.of(fileUtil.getTempPath(session.getUserId())).resolve(String.format("%s.%d.%s.recv",
+                session.getId(), chunkIndex, UUID.randomUUID().toString().replace("-", "")));
+    }
+
+    @Override
+    public Path getFinalPath(UploadSession session) throws IOException {
+        return Path.of(fileUtil.getUserPath(session.getUserId()))
+                .resolve(session.getId() + "_" + StringUtils.cleanPath(session.getFileName()));
+    }
+
+    @Override
+    public Path getTargetPath(UploadSession session) throws IOException {
+        return Path.of(fileUtil.getUserPath(session.getUserId())).resolve(session.getId() + DIRECT_UPLOAD_SUFFIX);
+    }
+}
@@ -0,0 +1,108 @@
+package cn.lmao.cloudown.service.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import cn.lmao.cloudown.model.dto.UploadPlan;
+import cn.lmao.cloudown.service.UploadTuningService;
+import cn.lmao.cloudown.util.FileUtil;
+import cn.lmao.cloudown.util.LogUtil;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 上传参数协商
+ * 分片大小取单连接吞吐量(按用户指数加权平均)乘以目标分片耗时, 并保证分片数不超过上限;
+ * 并发数随节点上正在接收的分片数增加而降低
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadTuningServiceImpl implements UploadTuningService {
+
+    private static final long MB = 1024L * 1024L;
+    // 吞吐量平滑系数, 越大越偏向最近的分片
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final FileUtil fileUtil;
+    private final Logger log = LogUtil.getLogger();
+
+    @Value("${file.upload.tuning.min-chunk-size:1MB}")
+    private DataSize minChunkSize;
+
+    @Value("${file.upload.max-chunk-size:64MB}")
+    private DataSize maxChunkSize;
+
+    // 单个分片期望的上传耗时
+    @Value("${file.upload.tuning.target-chunk-seconds:4}")
+    private double targetChunkSeconds;
+
+    // 单个文件的分片数上限, 避免大文件产生过多请求
+    @Value("${file.upload.tuning.max-chunks:2000}")
+    private int maxChunks;
+
+    // 无历史数据时假定的单连接吞吐量(每秒)
+    @Value("${file.upload.tuning.default-throughput:4MB}")
+    private DataSize defaultThroughput;
+
+    @Value("${file.upload.tuning.concurrency:4}")
+    private int baseConcurrency;
+
+    // 节点同时接收的分片数达到该值时建议客户端串行上传
+    @Value("${file.upload.tuning.max-inflight:64}")
+    private int maxInflight;
+
+    private final AtomicInteger inflightChunks = new AtomicInteger();
+    // 用户ID -> 单连接吞吐量(字节/秒)的指数加权平均
+    private final Map<Long, Double> throughputs = new ConcurrentHashMap<>();
+
+    @Override
+    public UploadPlan plan(Long userId, long fileSize, boolean multipart) {
+        double throughput = throughputs.getOrDefault(userId, (double) defaultThroughput.toBytes());
+
+        long upper = maxChunkSize.toBytes();
+        if (multipart) {
+            // multipart 上传的分片受 max-file-size 限制
+            upper = Math.min(upper, fileUtil.getMaxFileSizeInBytes());
+        }
+        long chunkSize = (long) (throughput * targetChunkSeconds);
+        chunkSize = Math.max(chunkSize, (fileSize + maxChunks - 1) / maxChunks);
+        // 按 MB 对齐, 便于磁盘顺序写
+        chunkSize = (chunkSize + MB - 1) / MB * MB;
+        chunkSize = Math.max(minChunkSize.toBytes(), Math.min(upper, chunkSize));
+
+        int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+
+        int concurrency = baseConcurrency;
+        int inflight = inflightChunks.get();
+        if (inflight >= maxInflight) {
+            concurrency = 1;
+        } else if (inflight >= maxInflight / 2) {
+            concurrency = Math.max(1, baseConcurrency / 2);
+        }
+        concurrency = Math.max(1, Math.min(concurrency, totalChunks));
+
+        log.debug("上传参数协商: userId={}, size={}, 吞吐={}B/s, 在途分片={}, chunkSize={}, 并发={}",
+                userId, fileSize, (long) throughput, inflight, chunkSize, concurrency);
+        return new UploadPlan(chunkSize, totalChunks, concurrency);
+    }
+
+    @Override
+    public void chunkStarted() {
+        inflightChunks.incrementAndGet();
+    }
+
+    @Override
+    public void chunkFinished(Long userId, long bytes, long elapsedNanos, boolean success) {
+        inflightChunks.decrementAndGet();
+        if (!success || elapsedNanos <= 0 || bytes <= 0) {
+            return;
+        }
+        double sample = bytes * 1_000_000_000.0 / elapsedNanos;
+        throughputs.merge(userId, sample, (old, value) -> old + EWMA_ALPHA * (value - old));
+    }
+}
@@ -1,5 +1,6 @@
 package cn.lmao.cloudown.service.impl;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 
@@ -54,6 +55,11 @@ public class UserServiceImpl implements UserService, UserDetailsService{
         return userRepository.getUserByEmail(email);
     }
 
+    @Override
+    public void recordLogin(String email) {
+        userRepository.updateLastLoginTime(email, LocalDateTime.now());
+    }
+
     @Override
     public void updateUserInfo(User user) {
         log.debug("更新用户信息: {}", user.getEmail());
@@ -115,11 +121,7 @@ public class UserServiceImpl implements UserService, UserDetailsService{
             throw new UsernameNotFoundException(ErrorOperationStatus.USER_NOT_FOUND.getMsg());
         }
         
-        log.debug("开始身份验证: {}", user.getEmail());
-        user.setLastLoginTime(java.time.LocalDateTime.now());
-        userRepository.save(user); // 更新最后登录时间
-        
-        log.debug("身份验证成功: {}", user.getEmail());
+        // 每个携带令牌的请求都会调用此方法, 最后登录时间改在登录成功时记录(recordLogin), 此处只读
         return new org.springframework.security.core.userdetails.User(
             user.getEmail(),
             user.getPassword(),
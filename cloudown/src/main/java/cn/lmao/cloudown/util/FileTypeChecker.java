@@ -1,7 +1,11 @@
 package cn.lmao.cloudown.util;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+
+import cn.lmao.cloudown.model.enums.FileCategory;
 
 public class FileTypeChecker {
 
@@ -10,6 +14,8 @@ public class FileTypeChecker {
         IMAGE, DOCUMENT, VIDEO, AUDIO, ARCHIVE, CODE, EXECUTABLE, OTHER
     }
 
+    private static final String FOLDER_TYPE = "文件夹";
+
     // 后缀名到文件类型的映射
     private static final Map<String, FileType> FILE_TYPES = new HashMap<>();
 
@@ -68,6 +74,12 @@ public class FileTypeChecker {
         addType("sh", FileType.EXECUTABLE);
     }
 
+    // 传输时值得压缩的后缀(文本类); 图片、音视频、压缩包及 Office 文档本身已压缩, 再压缩收益很小
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "txt", "csv", "tsv", "log", "md", "json", "xml", "html", "htm", "css", "js", "ts",
+            "java", "py", "c", "cpp", "h", "go", "sql", "sh", "bat", "yml", "yaml", "properties",
+            "ini", "conf", "svg", "tar", "bmp");
+
     private static void addType(String extension, FileType type) {
         FILE_TYPES.put(extension.toLowerCase(), type);
     }
@@ -84,7 +96,7 @@ public class FileTypeChecker {
         }
 
         // 统一处理：移除可能存在的点号并转为小写
-        String ext = extension.replaceAll("^\\.", "").toLowerCase();
+        String ext = (extension.charAt(0) == '.' ? extension.substring(1) : extension).toLowerCase(Locale.ROOT);
 
         return FILE_TYPES.getOrDefault(ext, FileType.OTHER);
     }
@@ -96,8 +108,13 @@ public class FileTypeChecker {
      * @return 类型中文描述
      */
     public static String getFileTypeDescription(String extension) {
-        FileType type = getFileTypeFromName(extension);
+        return getTypeDescription(getFileTypeFromName(extension));
+    }
 
+    /**
+     * 文件类型的中文描述(即 File.type 中保存的值)
+     */
+    public static String getTypeDescription(FileType type) {
         return switch (type) {
             case IMAGE -> "图片文件";
             case DOCUMENT -> "文档文件";
@@ -131,6 +148,42 @@ public class FileTypeChecker {
         return FileType.OTHER;
     }
 
+    /**
+     * 判断文件上传时是否值得压缩传输
+     *
+     * @param fileName 完整文件名
+     * @return 文本类等高压缩比文件返回true
+     */
+    public static boolean isCompressible(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        int dotIndex = fileName.lastIndexOf('.');
+        if (dotIndex <= 0 || dotIndex == fileName.length() - 1) {
+            return false;
+        }
+        return COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dotIndex + 1).toLowerCase());
+    }
+
+    /**
+     * 判断文件内容是否已经过压缩(图片、音视频、压缩包及 Office 文档), 打包时不宜再次压缩
+     *
+     * @param fileName 完整文件名
+     * @return 已压缩返回true
+     */
+    public static boolean isAlreadyCompressed(String fileName) {
+        if (fileName == null || isCompressible(fileName)) {
+            return false;
+        }
+        String lower = fileName.toLowerCase();
+        if (lower.endsWith(".docx") || lower.endsWith(".xlsx") || lower.endsWith(".pptx")) {
+            return true;
+        }
+        FileType type = getFileTypeFromName(fileName);
+        return type == FileType.IMAGE || type == FileType.VIDEO || type == FileType.AUDIO
+                || type == FileType.ARCHIVE;
+    }
+
     /**
      * 根据文件类型获取文件分类
      */
@@ -149,6 +202,25 @@ public class FileTypeChecker {
         }
     }
 
+    /**
+     * 文件入库时的分类, 持久化后分类视图直接按列查询
+     *
+     * @param fileName 完整文件名
+     * @param type     文件类型描述(File.type), 文件夹为 "文件夹"
+     */
+    public static FileCategory getCategory(String fileName, String type) {
+        if (FOLDER_TYPE.equals(type)) {
+            return FileCategory.FOLDER;
+        }
+        return switch (getFileTypeFromName(fileName)) {
+            case IMAGE -> FileCategory.IMAGES;
+            case DOCUMENT, CODE -> FileCategory.DOCUMENTS;
+            case VIDEO -> FileCategory.VIDEOS;
+            case AUDIO -> FileCategory.MUSIC;
+            default -> FileCategory.OTHERS;
+        };
+    }
+
     public static void main(String[] args) {
         // 测试文件类型检查
         String[] testFiles = {
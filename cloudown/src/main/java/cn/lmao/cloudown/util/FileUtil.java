@@ -11,6 +11,8 @@ import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Enumeration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,10 +36,24 @@ public class FileUtil {
     @Value("${app.server.base-url}")
     private String serverBaseUrl;
 
-    private MultipartProperties multipartProperties;
+    private final MultipartProperties multipartProperties;
 
     private static final Logger log = LogUtil.getLogger();
 
+    /**
+     * 上传文件根目录(不创建目录)
+     */
+    public Path getUploadRoot() {
+        return Path.of(FILE_PATH);
+    }
+
+    /**
+     * 临时文件根目录(不创建目录)
+     */
+    public Path getTempRoot() {
+        return Path.of(TEMP_PATH);
+    }
+
     /**
      * 获取用户路径
      * 
@@ -180,7 +196,7 @@ public class FileUtil {
      * @param bytes 字节数组
      * @return 十六进制字符串
      */
-    private static String bytesToHex(byte[] bytes) {
+    public static String bytesToHex(byte[] bytes) {
         StringBuilder hexString = new StringBuilder();
         for (byte b : bytes) {
             String hex = Integer.toHexString(0xff & b);
@@ -209,7 +225,13 @@ public class FileUtil {
 
     private static final Object TEMP_DIR_LOCK = new Object(); // 类级锁
 
+    // 已创建并通过写权限测试的目录, 每个目录只检查一次
+    private final Set<String> verifiedDirs = ConcurrentHashMap.newKeySet();
+
     private String createDirectory(String dir) throws IOException {
+        if (verifiedDirs.contains(dir)) {
+            return dir;
+        }
         try {
             // 创建目录
             synchronized (TEMP_DIR_LOCK) {
@@ -219,6 +241,7 @@ public class FileUtil {
                 // 写入测试文件
                 Files.write(testFile, "test".getBytes(),
                         StandardOpenOption.CREATE, StandardOpenOption.DELETE_ON_CLOSE);
+                verifiedDirs.add(dir);
                 return dir;
             }
         } catch (IOException e) {
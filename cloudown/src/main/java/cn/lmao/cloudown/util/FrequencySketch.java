@@ -0,0 +1,85 @@
+package cn.lmao.cloudown.util;
+
+/**
+ * 访问频率估计(Count-Min Sketch, TinyLFU 准入使用)
+ * 每个键映射到 4 行计数器中各一个, 频率取最小值; 计数器上限 15, 只增加最小的计数器以降低高估
+ * 累计增加次数达到采样窗口后所有计数器减半, 使历史热点逐渐冷却
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries 预计同时跟踪的键数量, 决定每行计数器个数(向上取2的幂)
+     */
+    public FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries) - 1) << 1;
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * 记录一次访问
+     */
+    public synchronized void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int[] indexes = new int[DEPTH];
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            indexes[i] = indexOf(hash, i);
+            min = Math.min(min, table[i][indexes[i]]);
+        }
+        if (min == MAX_COUNT) {
+            return;
+        }
+        for (int i = 0; i < DEPTH; i++) {
+            if (table[i][indexes[i]] == min) {
+                table[i][indexes[i]]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 估计的访问频率(0 ~ 15)
+     */
+    public synchronized int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table[i][indexOf(hash, i)]);
+        }
+        return min;
+    }
+
+    private void reset() {
+        for (byte[] row : table) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -2,6 +2,7 @@ package cn.lmao.cloudown.util;
 
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
@@ -23,6 +24,8 @@ import java.util.Map;
 public class JwtUtil {
     private final SecretKey key;
     private final long expiration;
+    // 解析器线程安全, 复用以免每次请求重新构建
+    private final JwtParser parser;
     private static final String TOKEN_PREFIX = "Bearer ";
     private final Logger log = LogUtil.getLogger();
 
@@ -36,6 +39,7 @@ public class JwtUtil {
             @Value("${jwt.expiration}") long expiration) {
         this.key = Keys.hmacShaKeyFor(secretKey.getBytes());
         this.expiration = expiration;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
         log.info("JwtUtils初始化完成，过期时间设置为: {}ms", expiration);
     }
 
@@ -77,17 +81,19 @@ public class JwtUtil {
 
         String token = extractToken(authHeader);
 
-        if (!validateToken(token)) {
+        // 验签与解析一次完成, 不再先 validateToken 再重复解析
+        String email;
+        try {
+            email = parser.parseClaimsJws(token)
+                    .getBody()
+                    .get("email", String.class);
+        } catch (ExpiredJwtException e) {
+            log.warn("令牌已过期");
+            throw new JwtException(ErrorOperationStatus.TOKEN_INVALID.getMsg());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("令牌无效: {}", e.getMessage());
             throw new JwtException(ErrorOperationStatus.TOKEN_INVALID.getMsg());
         }
-
-        log.debug("开始从令牌中解析邮箱");
-        String email = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("email", String.class);
         log.debug("成功从令牌中解析出邮箱: {}", email);
         return email;
     }
@@ -117,7 +123,7 @@ public class JwtUtil {
     public boolean validateToken(String token) {
         log.debug("开始验证令牌");
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+            parser.parseClaimsJws(token);
             log.debug("令牌验证成功");
             return true;
         } catch (ExpiredJwtException e) {
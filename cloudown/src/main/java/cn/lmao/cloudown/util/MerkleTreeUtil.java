@@ -0,0 +1,52 @@
+package cn.lmao.cloudown.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle 树工具类
+ * 叶子节点为各分片的 SHA-256, 父节点为 SHA-256(左子节点 || 右子节点),
+ * 奇数个节点时最后一个节点直接提升到上一层
+ */
+public class MerkleTreeUtil {
+
+    private MerkleTreeUtil() {}
+
+    /**
+     * 根据分片摘要（按分片顺序）计算 Merkle 根
+     *
+     * @param leaves 分片摘要列表
+     * @return Merkle 根摘要
+     */
+    public static byte[] computeRoot(List<byte[]> leaves) {
+        if (leaves == null || leaves.isEmpty()) {
+            throw new IllegalArgumentException("Merkle 树叶子节点不能为空");
+        }
+        MessageDigest digest = newDigest();
+        List<byte[]> level = leaves;
+        while (level.size() > 1) {
+            List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    parents.add(level.get(i));
+                } else {
+                    digest.update(level.get(i));
+                    digest.update(level.get(i + 1));
+                    parents.add(digest.digest());
+                }
+            }
+            level = parents;
+        }
+        return level.get(0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
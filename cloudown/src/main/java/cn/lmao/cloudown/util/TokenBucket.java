@@ -0,0 +1,91 @@
+package cn.lmao.cloudown.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 令牌桶(单位: 字节)
+ * 容量即允许的突发量; 取令牌不阻塞, 不足时由调用方根据 nanosUntil 自行安排等待
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final long capacity;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param capacity      桶容量(突发量), 初始为满
+     */
+    public TokenBucket(long ratePerSecond, long capacity) {
+        this(ratePerSecond, capacity, System::nanoTime);
+    }
+
+    // 测试时注入时钟(纳秒)
+    TokenBucket(long ratePerSecond, long capacity, LongSupplier clock) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+        this.capacity = Math.max(1, capacity);
+        this.clock = clock;
+        this.tokens = this.capacity;
+        this.lastRefillNanos = clock.getAsLong();
+    }
+
+    /**
+     * 取走至多 wanted 个令牌
+     *
+     * @return 实际取得的令牌数, 可能为0
+     */
+    public synchronized long take(long wanted) {
+        refill();
+        long granted = (long) Math.min(wanted, Math.max(0, tokens));
+        tokens -= granted;
+        return granted;
+    }
+
+    /**
+     * 归还未使用的令牌
+     */
+    public synchronized void giveBack(long count) {
+        tokens = Math.min(capacity, tokens + count);
+    }
+
+    /**
+     * 从多个令牌桶同时取令牌(如用户桶与全局桶), 各桶取得相同数量
+     * 依次从各桶取令牌, 后面的桶取得较少时把差额还给前面的桶; 最终少于 minimum 时全部归还
+     *
+     * @return 各桶均已扣除的令牌数, 不足 minimum 时为0
+     */
+    public static long takeAll(TokenBucket[] buckets, long wanted, long minimum) {
+        long granted = wanted;
+        for (int i = 0; i < buckets.length; i++) {
+            long got = buckets[i].take(granted);
+            for (int j = 0; j < i; j++) {
+                buckets[j].giveBack(granted - got);
+            }
+            granted = got;
+            if (granted < minimum) {
+                for (int j = 0; j <= i; j++) {
+                    buckets[j].giveBack(granted);
+                }
+                return 0;
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * 距离桶内至少有 count 个令牌还需等待的纳秒数
+     */
+    public synchronized long nanosUntil(long count) {
+        refill();
+        double missing = Math.min(count, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,99 @@
+package cn.lmao.cloudown.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import cn.lmao.cloudown.model.dto.ApiResponse;
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.dto.FilePage;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.repository.FileSpecifications;
+import cn.lmao.cloudown.repository.FileSpecifications.ListSort;
+import cn.lmao.cloudown.service.FileService;
+import cn.lmao.cloudown.service.UserService;
+
+/**
+ * 分页列表接口: 客户端传入的游标无法解析时返回 400, 而不是系统错误
+ */
+@ExtendWith(MockitoExtension.class)
+class FileControllerTest {
+
+    private static final String EMAIL = "paging@example.com";
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private FileController fileController;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(EMAIL, null));
+        User user = new User();
+        user.setEmail(EMAIL);
+        user.setNickname("paging");
+        when(userService.getUserInfo(EMAIL)).thenReturn(user);
+        // 与 FileServiceImpl.getFilePage 一致: 查询前先解析游标
+        when(fileService.getFilePage(any(), anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    FileSpecifications.after(ListSort.parse(invocation.getArgument(3)), invocation.getArgument(4));
+                    return new FilePage<FileItem>(List.of(), null);
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private ApiResponse<FilePage<FileItem>> listPage(String sort, String cursor) {
+        return fileController.listPage("my-files/", "my-files", sort, cursor, 50);
+    }
+
+    @Test
+    void malformedCursorIsBadRequest() {
+        for (String cursor : List.of("!!!", "bm8tc2VwYXJhdG9y", "YS50eHR8YWJj")) {
+            ApiResponse<FilePage<FileItem>> response = listPage("name-asc", cursor);
+
+            assertEquals(400, response.getCode(), cursor);
+            assertEquals("无效的分页游标", response.getMsg());
+            assertNull(response.getData());
+        }
+    }
+
+    @Test
+    void cursorFromAnotherSortIsBadRequest() {
+        // 按名称排序的游标用于按时间排序
+        String cursor = FileSpecifications.cursorOf(ListSort.parse("name-asc"),
+                new FileItem(1L, "a.txt", 1L, "文本文件", null, null, null, null));
+
+        assertEquals(400, listPage("time-desc", cursor).getCode());
+    }
+
+    @Test
+    void validCursorSucceeds() {
+        String cursor = FileSpecifications.cursorOf(ListSort.parse("name-asc"),
+                new FileItem(1L, "a|b.txt", 1L, "文本文件", null, null, null, null));
+
+        assertEquals(200, listPage("name-asc", cursor).getCode());
+    }
+}
@@ -0,0 +1,191 @@
+package cn.lmao.cloudown.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.service.FileTreeService;
+import cn.lmao.cloudown.service.impl.FileTreeServiceImpl;
+
+/**
+ * 闭包表: 插入节点、移动子树(断开 + 挂接)后各节点的上级关系, 以及选中项嵌套判断
+ * 测试树: 根 / A / B / c.txt, 根 / D
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(FileTreeServiceImpl.class)
+class FileClosureRepositoryTest {
+
+    private static final String FOLDER_TYPE = "文件夹";
+
+    @Autowired
+    private FileClosureRepository fileClosureRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private FileTreeService fileTreeService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+    private Long a;
+    private Long b;
+    private Long c;
+    private Long d;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("tree@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        a = node("A", FOLDER_TYPE, File.ROOT_ID);
+        b = node("B", FOLDER_TYPE, a);
+        c = node("c.txt", "文本文件", b);
+        d = node("D", FOLDER_TYPE, File.ROOT_ID);
+    }
+
+    private Long node(String name, String type, Long parentId) {
+        File file = new File(name, "/data/" + name, File.ROOT_PATH, type, user);
+        file.setParentId(parentId);
+        Long id = entityManager.persistAndFlush(file).getId();
+        fileClosureRepository.insertNode(id, parentId);
+        return id;
+    }
+
+    // 节点的全部上级及层级差, 格式为 "上级ID:层级", 含自身
+    private Set<String> ancestorsOf(Long id) {
+        return fileClosureRepository.findAll().stream()
+                .filter(row -> row.getDescendantId().equals(id))
+                .map(row -> row.getAncestorId() + ":" + row.getDepth())
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<String> ancestors(Object... idAndDepth) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < idAndDepth.length; i += 2) {
+            result.add(idAndDepth[i] + ":" + idAndDepth[i + 1]);
+        }
+        return result;
+    }
+
+    private void move(List<Long> ids, Long targetId) {
+        fileClosureRepository.detachSubtrees(ids);
+        fileClosureRepository.attachSubtrees(ids, targetId);
+        entityManager.clear();
+    }
+
+    @Test
+    void insertNodeCopiesParentAncestors() {
+        entityManager.clear();
+
+        assertEquals(ancestors(a, 0), ancestorsOf(a));
+        assertEquals(ancestors(b, 0, a, 1), ancestorsOf(b));
+        assertEquals(ancestors(c, 0, b, 1, a, 2), ancestorsOf(c));
+        assertEquals(ancestors(d, 0), ancestorsOf(d));
+    }
+
+    @Test
+    void findNestedReturnsSelectedNodesInsideOtherSelections() {
+        assertEquals(Set.of(b, c), Set.copyOf(fileClosureRepository.findNested(Set.of(a, b, c, d))));
+        assertEquals(Set.of(c), Set.copyOf(fileClosureRepository.findNested(Set.of(b, c))));
+        assertTrue(fileClosureRepository.findNested(Set.of(a, d)).isEmpty());
+        assertTrue(fileClosureRepository.findNested(Set.of(c, d)).isEmpty());
+    }
+
+    @Test
+    void moveSubtreeReplacesOuterAncestorsOnly() {
+        move(List.of(b), d);
+
+        // B 及其子节点脱离 A, 挂到 D 下; 子树内部关系不变
+        assertEquals(ancestors(b, 0, d, 1), ancestorsOf(b));
+        assertEquals(ancestors(c, 0, b, 1, d, 2), ancestorsOf(c));
+        assertEquals(ancestors(a, 0), ancestorsOf(a));
+        assertEquals(ancestors(d, 0), ancestorsOf(d));
+
+        assertTrue(fileClosureRepository.findNested(Set.of(a, b, c)).stream().noneMatch(b::equals));
+        assertEquals(Set.of(b, c), Set.copyOf(fileClosureRepository.findNested(Set.of(d, b, c))));
+        assertEquals(Set.of(c), Set.copyOf(fileClosureRepository.findNested(Set.of(a, b, c))));
+    }
+
+    @Test
+    void moveSubtreeToRootKeepsOnlyInternalRelations() {
+        move(List.of(b), File.ROOT_ID);
+
+        assertEquals(ancestors(b, 0), ancestorsOf(b));
+        assertEquals(ancestors(c, 0, b, 1), ancestorsOf(c));
+        assertTrue(fileClosureRepository.findNested(Set.of(a, b)).isEmpty());
+    }
+
+    @Test
+    void moveSeveralSubtreesAtOnce() {
+        Long e = node("e.txt", "文本文件", File.ROOT_ID);
+
+        move(List.of(a, e), d);
+
+        assertEquals(ancestors(a, 0, d, 1), ancestorsOf(a));
+        assertEquals(ancestors(b, 0, a, 1, d, 2), ancestorsOf(b));
+        assertEquals(ancestors(c, 0, b, 1, a, 2, d, 3), ancestorsOf(c));
+        assertEquals(ancestors(e, 0, d, 1), ancestorsOf(e));
+        assertEquals(Set.of(a, b, c, e), Set.copyOf(fileClosureRepository.findNested(Set.of(a, b, c, d, e))));
+    }
+
+    @Test
+    void serviceMoveUpdatesParentAndClosure() {
+        fileTreeService.move(user, List.of(b, c), d);
+        entityManager.clear();
+
+        // c 位于 B 的子树中, 随 B 一起移动, 父目录不变
+        assertEquals(d, fileRepository.findById(b).orElseThrow().getParentId());
+        assertEquals(b, fileRepository.findById(c).orElseThrow().getParentId());
+        assertEquals(ancestors(c, 0, b, 1, d, 2), ancestorsOf(c));
+        assertEquals(b, fileTreeService.resolveFolder(user, "my-files/D/B/"));
+    }
+
+    @Test
+    void relativePathIsLegacyOnly() throws Exception {
+        File created = fileTreeService.create(new File("n.txt", "/data/n.txt", null, "文本文件", user), d, false);
+        fileTreeService.move(user, List.of(created.getId()), a);
+        entityManager.clear();
+
+        // 新记录不写入, 移动后也不改写; 所在目录只由 parentId 表示, 接口响应中不输出
+        File moved = fileRepository.findById(created.getId()).orElseThrow();
+        assertEquals("/", moved.getRelativePath());
+        assertEquals(a, moved.getParentId());
+        assertTrue(!new ObjectMapper().findAndRegisterModules().writeValueAsString(moved).contains("relativePath"));
+    }
+
+    @Test
+    void serviceMoveIntoOwnSubtreeIsRejected() {
+        CustomException e = assertThrows(CustomException.class, () -> fileTreeService.move(user, List.of(a), b));
+
+        assertEquals(ErrorOperationStatus.FILE_PATH_INVALID.getCode(), e.getCode());
+        entityManager.clear();
+        assertEquals(ancestors(b, 0, a, 1), ancestorsOf(b));
+    }
+}
@@ -0,0 +1,184 @@
+package cn.lmao.cloudown.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ActiveProfiles;
+
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.repository.FileSpecifications.ListSort;
+
+/**
+ * 键集分页: 按 FileServiceImpl.getFilePage 的方式逐页读取, 拼接结果应与一次性排序查询完全一致
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class FileRepositoryPagingTest {
+
+    private static final LocalDateTime SAME_TIME = LocalDateTime.of(2024, 5, 1, 12, 0, 0);
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("paging@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+    }
+
+    private File file(String name, long size, FileStatus status) {
+        File file = new File(name, "/data/" + name, "/", "文本文件", user);
+        file.setParentId(File.ROOT_ID);
+        file.setSize(size);
+        file.setStatus(status);
+        return entityManager.persist(file);
+    }
+
+    // 创建时间由 @PrePersist 写入, 这里统一改为同一秒, 构造排序值相同的行
+    private void sameCreateTime() {
+        entityManager.flush();
+        entityManager.getEntityManager().createQuery("UPDATE File f SET f.createTime = :time WHERE f.user = :user")
+                .setParameter("time", SAME_TIME)
+                .setParameter("user", user)
+                .executeUpdate();
+        entityManager.clear();
+    }
+
+    private List<FileItem> all(String category, ListSort sort) {
+        Long folderId = FileSpecifications.CATEGORY_MY_FILES.equals(category) ? File.ROOT_ID : null;
+        return fileRepository.findItems(FileSpecifications.listing(user, folderId, category), sort.toSort(), 0);
+    }
+
+    private List<FileItem> pageThrough(String category, String sortParam, int pageSize) {
+        ListSort sort = ListSort.parse(sortParam);
+        Long folderId = FileSpecifications.CATEGORY_MY_FILES.equals(category) ? File.ROOT_ID : null;
+        List<FileItem> result = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Specification<File> spec = FileSpecifications.listing(user, folderId, category)
+                    .and(FileSpecifications.after(sort, cursor));
+            List<FileItem> rows = fileRepository.findItems(spec, sort.toSort(), pageSize + 1);
+            boolean hasMore = rows.size() > pageSize;
+            List<FileItem> items = hasMore ? rows.subList(0, pageSize) : rows;
+            result.addAll(items);
+            cursor = hasMore ? FileSpecifications.cursorOf(sort, items.get(items.size() - 1)) : null;
+            assertTrue(++pages <= 100, "分页未结束");
+        } while (cursor != null);
+        return result;
+    }
+
+    private static List<Long> ids(List<FileItem> items) {
+        return items.stream().map(FileItem::getId).toList();
+    }
+
+    private void assertPagesMatch(String category, String sortParam, int pageSize, int expectedCount) {
+        List<Long> paged = ids(pageThrough(category, sortParam, pageSize));
+        assertEquals(expectedCount, paged.size());
+        assertEquals(expectedCount, new HashSet<>(paged).size(), "跨页出现重复行");
+        assertEquals(ids(all(category, ListSort.parse(sortParam))), paged);
+    }
+
+    @Test
+    void tieOnCreateTimeAcrossPageBoundary() {
+        for (int i = 0; i < 7; i++) {
+            file("f" + i + ".txt", i, FileStatus.ACTIVE);
+        }
+        sameCreateTime();
+
+        // 每页3行: 第一、二页的分界都落在相同的创建时间内, 依靠 id 继续
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "time-desc", 3, 7);
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "time-asc", 3, 7);
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "time-desc", 1, 7);
+    }
+
+    @Test
+    void tieOnSizeAcrossPageBoundary() {
+        for (int i = 0; i < 6; i++) {
+            file("s" + i + ".txt", i < 4 ? 100 : 200, FileStatus.ACTIVE);
+        }
+        entityManager.flush();
+
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "size-asc", 3, 6);
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "size-desc", 2, 6);
+    }
+
+    @Test
+    void tieOnNameAcrossPageBoundaryInTrash() {
+        // 回收站中的记录不受同名约束, 可以出现完全相同的名称
+        for (int i = 0; i < 5; i++) {
+            file("same.txt", i, FileStatus.DELETED);
+        }
+        file("other.txt", 0, FileStatus.DELETED);
+        entityManager.flush();
+
+        assertPagesMatch(FileSpecifications.CATEGORY_TRASH, "name-asc", 2, 6);
+        assertPagesMatch(FileSpecifications.CATEGORY_TRASH, "name-desc", 4, 6);
+    }
+
+    @Test
+    void namesContainingTheCursorSeparator() {
+        for (String name : List.of("a|b", "a|", "|", "a|b|1", "a", "b|a", "||")) {
+            file(name, 1, FileStatus.ACTIVE);
+        }
+        entityManager.flush();
+
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "name-asc", 1, 7);
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "name-asc", 2, 7);
+        assertPagesMatch(FileSpecifications.CATEGORY_MY_FILES, "name-desc", 3, 7);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        file("only.txt", 1, FileStatus.ACTIVE);
+        entityManager.flush();
+        ListSort sort = ListSort.parse("time-desc");
+
+        List<FileItem> rows = fileRepository.findItems(
+                FileSpecifications.listing(user, File.ROOT_ID, FileSpecifications.CATEGORY_MY_FILES), sort.toSort(), 2);
+        assertEquals(1, rows.size());
+
+        // 以最后一行为游标继续读取得到空页
+        Specification<File> spec = FileSpecifications.listing(user, File.ROOT_ID, FileSpecifications.CATEGORY_MY_FILES)
+                .and(FileSpecifications.after(sort, FileSpecifications.cursorOf(sort, rows.get(0))));
+        assertTrue(fileRepository.findItems(spec, sort.toSort(), 2).isEmpty());
+    }
+
+    @Test
+    void malformedCursorFailsBeforeQuerying() {
+        file("a.txt", 1, FileStatus.ACTIVE);
+        entityManager.flush();
+        ListSort sort = ListSort.parse("name-asc");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> FileSpecifications.listing(user, File.ROOT_ID, FileSpecifications.CATEGORY_MY_FILES)
+                        .and(FileSpecifications.after(sort, "not a cursor")));
+        assertEquals("无效的分页游标", e.getMessage());
+        assertNull(FileSpecifications.after(sort, ""));
+    }
+}
@@ -0,0 +1,116 @@
+package cn.lmao.cloudown.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import cn.lmao.cloudown.model.dto.FileItem;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.repository.FileSpecifications.ListSort;
+
+/**
+ * 分页游标的编码与校验
+ * 游标来自客户端, 任何无法解析的内容都应为 IllegalArgumentException(由接口转为 400), 不能在查询时才出错
+ */
+class FileSpecificationsTest {
+
+    private static final ListSort BY_TIME = ListSort.parse("time-desc");
+    private static final ListSort BY_NAME = ListSort.parse("name-asc");
+    private static final ListSort BY_SIZE = ListSort.parse("size-asc");
+
+    private static FileItem item(long id, String name, long size) {
+        LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 0, 0);
+        return new FileItem(id, name, size, "文本文件", null, FileStatus.ACTIVE, time, time);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertInvalid(ListSort sort, String cursor) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> FileSpecifications.after(sort, cursor), cursor);
+        assertEquals("无效的分页游标", e.getMessage());
+    }
+
+    @Test
+    void parsesSortAndFallsBackToTimeDescending() {
+        assertEquals(new ListSort("name", true), ListSort.parse("name-asc"));
+        assertEquals(new ListSort("size", false), ListSort.parse("size-desc"));
+        assertEquals(new ListSort("createTime", true), ListSort.parse("time-asc"));
+        assertEquals(new ListSort("createTime", false), ListSort.parse("unknown"));
+        assertEquals(new ListSort("createTime", false), ListSort.parse(null));
+    }
+
+    @Test
+    void emptyCursorMeansFirstPage() {
+        assertNull(FileSpecifications.after(BY_TIME, null));
+        assertNull(FileSpecifications.after(BY_TIME, ""));
+    }
+
+    @Test
+    void cursorsProducedByCursorOfAreAccepted() {
+        FileItem last = item(42, "报告|草稿|v2.txt", 1024);
+
+        assertNotNull(FileSpecifications.after(BY_TIME, FileSpecifications.cursorOf(BY_TIME, last)));
+        assertNotNull(FileSpecifications.after(BY_NAME, FileSpecifications.cursorOf(BY_NAME, last)));
+        assertNotNull(FileSpecifications.after(BY_SIZE, FileSpecifications.cursorOf(BY_SIZE, last)));
+    }
+
+    @Test
+    void nameCursorKeepsSeparatorsInsideTheName() {
+        String cursor = FileSpecifications.cursorOf(BY_NAME, item(7, "a|b|", 0));
+
+        // id 取最后一个分隔符之后的部分, 名称中的分隔符原样保留
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        assertEquals("a|b||7", decoded);
+        assertNotNull(FileSpecifications.after(BY_NAME, cursor));
+    }
+
+    @Test
+    void rejectsCursorThatIsNotBase64() {
+        assertInvalid(BY_TIME, "!!!");
+        assertInvalid(BY_TIME, "%E4%BD%A0");
+        // 标准 Base64 字符集中的 + / 不属于 URL 安全字符集
+        assertInvalid(BY_NAME, "YS+8/w");
+    }
+
+    @Test
+    void rejectsCursorWithoutSeparator() {
+        assertInvalid(BY_NAME, encode("no-separator"));
+        assertInvalid(BY_SIZE, encode("1024"));
+    }
+
+    @Test
+    void rejectsCursorWithInvalidId() {
+        assertInvalid(BY_NAME, encode("a.txt|"));
+        assertInvalid(BY_NAME, encode("a.txt|abc"));
+        assertInvalid(BY_NAME, encode("a.txt|99999999999999999999"));
+    }
+
+    @Test
+    void rejectsCursorWhoseValueDoesNotMatchTheSort() {
+        // 按名称排序生成的游标用于按时间、按大小排序
+        String nameCursor = FileSpecifications.cursorOf(BY_NAME, item(1, "a.txt", 10));
+        assertInvalid(BY_TIME, nameCursor);
+        assertInvalid(BY_SIZE, nameCursor);
+
+        assertInvalid(BY_TIME, encode("2024-13-01T00:00|1"));
+        assertInvalid(BY_SIZE, encode("|1"));
+    }
+
+    @Test
+    void rejectsTamperedCursor() {
+        String cursor = FileSpecifications.cursorOf(BY_TIME, item(42, "a.txt", 10));
+        // 截断后的内容不再是完整的时间值与ID
+        assertInvalid(BY_TIME, cursor.substring(0, cursor.length() / 2));
+        assertInvalid(BY_TIME, "x" + cursor);
+    }
+}
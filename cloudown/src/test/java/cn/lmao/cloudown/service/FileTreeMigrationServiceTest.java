@@ -0,0 +1,182 @@
+package cn.lmao.cloudown.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.repository.FileClosureRepository;
+import cn.lmao.cloudown.repository.FileRepository;
+
+/**
+ * 目录树迁移: 由旧数据的 relativePath 推导 parentId 与闭包表, 重名的有效文件追加序号, 找不到上级目录的节点挂到根目录
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(FileTreeMigrationService.class)
+class FileTreeMigrationServiceTest {
+
+    private static final String FOLDER_TYPE = "文件夹";
+    private static final String TEXT_TYPE = "文本文件";
+
+    @Autowired
+    private FileTreeMigrationService migrationService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private FileClosureRepository fileClosureRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("legacy@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+    }
+
+    // 旧版本写入的记录: 只有 relativePath, 没有 parentId, 也没有同名约束标记
+    private Long legacy(String name, String type, String relativePath, FileStatus status) {
+        File file = new File(name, "/data/" + name, relativePath, type, user);
+        file.setStatus(status);
+        Long id = entityManager.persistAndFlush(file).getId();
+        entityManager.getEntityManager().createQuery("UPDATE File f SET f.live = NULL WHERE f.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+        return id;
+    }
+
+    private Long legacy(String name, String type, String relativePath) {
+        return legacy(name, type, relativePath, FileStatus.ACTIVE);
+    }
+
+    private File reload(Long id) {
+        return fileRepository.findById(id).orElseThrow();
+    }
+
+    private void migrate() {
+        migrationService.migrate();
+        entityManager.clear();
+    }
+
+    private Set<Long> ancestorsOf(Long id) {
+        return fileClosureRepository.findAll().stream()
+                .filter(row -> row.getDescendantId().equals(id) && row.getDepth() > 0)
+                .map(row -> row.getAncestorId())
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void derivesParentsAndClosureFromRelativePath() {
+        Long docs = legacy("docs", FOLDER_TYPE, File.ROOT_PATH);
+        Long work = legacy("work", FOLDER_TYPE, "my-files/docs/");
+        Long report = legacy("report.txt", TEXT_TYPE, "my-files/docs/work/");
+        Long top = legacy("top.txt", TEXT_TYPE, File.ROOT_PATH);
+
+        migrate();
+
+        assertEquals(File.ROOT_ID, reload(docs).getParentId());
+        assertEquals(docs, reload(work).getParentId());
+        assertEquals(work, reload(report).getParentId());
+        assertEquals(File.ROOT_ID, reload(top).getParentId());
+        assertEquals(Set.of(docs, work), ancestorsOf(report));
+        assertEquals(Set.of(), ancestorsOf(top));
+        assertTrue(fileRepository.findUserIdsWithoutParent().isEmpty());
+    }
+
+    @Test
+    void orphanedRelativePathIsAttachedToRoot() {
+        // 旧版本重命名目录后, 子节点的 relativePath 仍指向原名称
+        Long renamed = legacy("new-name", FOLDER_TYPE, File.ROOT_PATH);
+        Long orphan = legacy("orphan.txt", TEXT_TYPE, "my-files/old-name/");
+        Long nestedOrphan = legacy("deep.txt", TEXT_TYPE, "my-files/old-name/sub/");
+
+        migrate();
+
+        assertEquals(File.ROOT_ID, reload(orphan).getParentId());
+        assertEquals(File.ROOT_ID, reload(nestedOrphan).getParentId());
+        assertEquals(Set.of(), ancestorsOf(orphan));
+        assertEquals(Boolean.TRUE, reload(orphan).getLive());
+        assertEquals(File.ROOT_ID, reload(renamed).getParentId());
+    }
+
+    @Test
+    void duplicateActiveNamesAreNumbered() {
+        Long first = legacy("a.txt", TEXT_TYPE, File.ROOT_PATH);
+        Long second = legacy("a.txt", TEXT_TYPE, File.ROOT_PATH);
+        Long third = legacy("a.txt", TEXT_TYPE, File.ROOT_PATH);
+        Long folder = legacy("dir", FOLDER_TYPE, File.ROOT_PATH);
+        Long sameFolder = legacy("dir", FOLDER_TYPE, File.ROOT_PATH);
+        Long inFolder = legacy("a.txt", TEXT_TYPE, "my-files/dir/");
+        Long deleted = legacy("a.txt", TEXT_TYPE, File.ROOT_PATH, FileStatus.DELETED);
+
+        migrate();
+
+        // 按ID顺序, 先写入的保留原名
+        assertEquals("a.txt", reload(first).getName());
+        assertEquals("a (1).txt", reload(second).getName());
+        assertEquals("a (2).txt", reload(third).getName());
+        assertEquals("dir", reload(folder).getName());
+        assertEquals("dir (1)", reload(sameFolder).getName());
+        // 不同目录、回收站中的同名文件不改名
+        assertEquals("a.txt", reload(inFolder).getName());
+        assertEquals(folder, reload(inFolder).getParentId());
+        assertEquals("a.txt", reload(deleted).getName());
+
+        for (Long id : List.of(first, second, third, folder, sameFolder, inFolder)) {
+            assertEquals(Boolean.TRUE, reload(id).getLive());
+        }
+        assertNull(reload(deleted).getLive());
+    }
+
+    @Test
+    void legacyNameTakenByMigratedNodeIsNumbered() {
+        File migrated = new File("b.txt", "/data/b.txt", File.ROOT_PATH, TEXT_TYPE, user);
+        migrated.setParentId(File.ROOT_ID);
+        Long existing = entityManager.persistAndFlush(migrated).getId();
+        fileClosureRepository.insertNode(existing, File.ROOT_ID);
+        Long legacyId = legacy("b.txt", TEXT_TYPE, File.ROOT_PATH);
+
+        migrate();
+
+        assertEquals("b.txt", reload(existing).getName());
+        assertEquals("b (1).txt", reload(legacyId).getName());
+        assertEquals(File.ROOT_ID, reload(legacyId).getParentId());
+    }
+
+    @Test
+    void migrationIsIdempotent() {
+        Long docs = legacy("docs", FOLDER_TYPE, File.ROOT_PATH);
+        Long file = legacy("a.txt", TEXT_TYPE, "my-files/docs/");
+        migrate();
+        long closureRows = fileClosureRepository.count();
+
+        migrate();
+
+        assertEquals(closureRows, fileClosureRepository.count());
+        assertEquals(docs, reload(file).getParentId());
+        assertEquals("a.txt", reload(file).getName());
+    }
+}
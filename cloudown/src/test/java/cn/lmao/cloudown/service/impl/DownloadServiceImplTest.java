@@ -0,0 +1,340 @@
+package cn.lmao.cloudown.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.enums.UserRole;
+import cn.lmao.cloudown.service.FileCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Range / If-Range 处理: 区间解析与合并、416、区间数超限回退完整文件; 限速异步写出
+ */
+class DownloadServiceImplTest {
+
+    private static final String HASH = "a".repeat(64);
+    private static final String ETAG = "\"" + HASH + "\"";
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadServiceImpl downloadService;
+    private File file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileCacheService fileCacheService = mock(FileCacheService.class);
+        when(fileCacheService.get(any())).thenReturn(null);
+        downloadService = new DownloadServiceImpl(new SimpleMeterRegistry(), fileCacheService);
+        ReflectionTestUtils.setField(downloadService, "maxRanges", 32);
+        ReflectionTestUtils.setField(downloadService, "throttleEnabled", false);
+        ReflectionTestUtils.setField(downloadService, "globalRate", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(downloadService, "guestRate", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(downloadService, "userRate", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(downloadService, "adminRate", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(downloadService, "superAdminRate", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(downloadService, "burstSeconds", 1.0);
+        downloadService.initThrottle();
+
+        // 内容为 0..99 的字节, 便于按位置核对
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Path path = tempDir.resolve("data.bin");
+        Files.write(path, content);
+
+        file = new File();
+        file.setId(1L);
+        file.setPath(path.toString());
+        file.setHash(HASH);
+        file.setSize((long) content.length);
+        file.setUpdateTime(LocalDateTime.of(2025, 7, 1, 12, 0, 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloadService.shutdownThrottle();
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.writeFile(request, response, 1L, UserRole.USER, file, "data.bin", false);
+        return response;
+    }
+
+    private static MockHttpServletRequest rangeRequest(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/file/download");
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+
+    @Test
+    void noRangeReturnsFullBody() throws Exception {
+        MockHttpServletResponse response = download(new MockHttpServletRequest("GET", "/api/file/download"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void suffixRangeReturnsTail() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=-10"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 90-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(10, response.getContentLength());
+        assertArrayEquals(Arrays.copyOfRange(content, 90, 100), response.getContentAsByteArray());
+    }
+
+    @Test
+    void suffixRangeLongerThanFileReturnsWholeFileAsPartial() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=-500"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void openEndedRangeIsClampedToFileSize() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=95-"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 95-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 95, 100), response.getContentAsByteArray());
+    }
+
+    @Test
+    void overlappingAndAdjacentRangesAreMerged() throws Exception {
+        // 10-19 与 15-29 重叠, 30-39 与之相邻, 三者合并为单个区间
+        MockHttpServletResponse response = download(rangeRequest("bytes=15-29,30-39,10-19"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-39/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 40), response.getContentAsByteArray());
+    }
+
+    @Test
+    void disjointRangesReturnMultipartByteranges() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=50-54,0-4"));
+
+        assertEquals(206, response.getStatus());
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="), contentType);
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+        // 区间按起始位置排序输出
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        String first = "Content-Range: bytes 0-4/100\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 0, 5), StandardCharsets.ISO_8859_1);
+        String second = "Content-Range: bytes 50-54/100\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 50, 55), StandardCharsets.ISO_8859_1);
+        assertTrue(body.indexOf(first) > 0);
+        assertTrue(body.indexOf(second) > body.indexOf(first));
+        assertTrue(body.endsWith("\r\n--" + boundary + "--\r\n"));
+        assertEquals(body.length(), response.getContentLength());
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=100-200"));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void unsatisfiableRangesAreDroppedWhenOthersAreSatisfiable() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=200-300,0-9"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-9/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void malformedRangeIsIgnored() throws Exception {
+        MockHttpServletResponse response = download(rangeRequest("bytes=abc"));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void tooManyRangesFallBackToFullBody() throws Exception {
+        ReflectionTestUtils.setField(downloadService, "maxRanges", 2);
+
+        MockHttpServletResponse response = download(rangeRequest("bytes=0-1,10-11,20-21"));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void mergedRangesWithinLimitAreServed() throws Exception {
+        ReflectionTestUtils.setField(downloadService, "maxRanges", 1);
+
+        // 合并后只剩一个区间, 不触发回退
+        MockHttpServletResponse response = download(rangeRequest("bytes=0-9,5-14,15-19"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-19/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void ifRangeMatchingEtagServesRange() throws Exception {
+        MockHttpServletRequest request = rangeRequest("bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-9/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void ifRangeMismatchedEtagReturnsFullBody() throws Exception {
+        MockHttpServletRequest request = rangeRequest("bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"" + "b".repeat(64) + "\"");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeWeakEtagReturnsFullBody() throws Exception {
+        MockHttpServletRequest request = rangeRequest("bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "W/" + ETAG);
+
+        assertEquals(200, download(request).getStatus());
+    }
+
+    @Test
+    void ifRangeDateMatchesLastModified() throws Exception {
+        long lastModified = file.getUpdateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        MockHttpServletRequest matching = rangeRequest("bytes=0-9");
+        matching.addHeader(HttpHeaders.IF_RANGE, lastModified);
+        MockHttpServletRequest stale = rangeRequest("bytes=0-9");
+        stale.addHeader(HttpHeaders.IF_RANGE, lastModified - 60_000);
+
+        assertEquals(206, download(matching).getStatus());
+        assertEquals(200, download(stale).getStatus());
+    }
+
+    @Test
+    void throttledWriteDeliversAllRangesAndCompletes() throws Exception {
+        // 速率 64KB/s, 桶容量 64KB: 首个 64KB 立即写出, 其余需等待令牌补充
+        ReflectionTestUtils.setField(downloadService, "throttleEnabled", true);
+        ReflectionTestUtils.setField(downloadService, "userRate", DataSize.ofKilobytes(64));
+        downloadService.shutdownThrottle();
+        downloadService.initThrottle();
+        content = new byte[128 * 1024];
+        new Random(42).nextBytes(content);
+        Files.write(Path.of(file.getPath()), content);
+        file.setSize((long) content.length);
+
+        MockHttpServletRequest request = rangeRequest("bytes=0-99,32768-");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AsyncOutputStream outputStream = new AsyncOutputStream();
+        long start = System.nanoTime();
+        downloadService.writeFile(request, new HttpServletResponseWrapper(response) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return outputStream;
+            }
+        }, 1L, UserRole.USER, file, "data.bin", false);
+
+        // 写出在异步上下文中进行, 完成后 asyncContext.complete() 结束异步状态
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (request.isAsyncStarted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(!request.isAsyncStarted(), "限速写出未完成");
+        assertEquals(206, response.getStatus());
+        byte[] body = outputStream.toByteArray();
+        assertEquals(response.getContentLengthLong(), body.length);
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains(new String(Arrays.copyOfRange(content, 0, 100), StandardCharsets.ISO_8859_1)));
+        assertTrue(text.contains(new String(Arrays.copyOfRange(content, 32768, content.length),
+                StandardCharsets.ISO_8859_1)));
+        // 共约 96KB, 超出桶容量的约 32KB 需等待令牌补充(约 0.5 秒)
+        assertTrue(elapsedMillis >= 400, "应因令牌不足而等待: " + elapsedMillis + "ms");
+    }
+
+    /**
+     * 始终可写的非阻塞输出流, 注册监听器时立即回调 onWritePossible
+     */
+    private static final class AsyncOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                writeListener.onWritePossible();
+            } catch (IOException e) {
+                writeListener.onError(e);
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            buffer.write(b, off, len);
+        }
+
+        synchronized byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+}
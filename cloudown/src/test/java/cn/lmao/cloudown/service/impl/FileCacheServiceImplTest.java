@@ -0,0 +1,198 @@
+package cn.lmao.cloudown.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import cn.lmao.cloudown.model.entity.File;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 热点小文件缓存: 准入、并发未命中只加载一次、加载前占用容量
+ */
+class FileCacheServiceImplTest {
+
+    private static final int FILE_SIZE = 16 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FileCacheServiceImpl cache;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private FileCacheServiceImpl newCache(DataSize maxMemory, int minFrequency) {
+        return newCache(maxMemory, minFrequency, null);
+    }
+
+    /**
+     * @param release 非空时 load 先等待该信号, 使并发请求都在加载完成前到达
+     */
+    private FileCacheServiceImpl newCache(DataSize maxMemory, int minFrequency, CountDownLatch release) {
+        FileCacheServiceImpl service = new FileCacheServiceImpl(meterRegistry);
+        ReflectionTestUtils.setField(service, "cacheEnabled", true);
+        ReflectionTestUtils.setField(service, "maxMemory", maxMemory);
+        ReflectionTestUtils.setField(service, "maxFileSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(service, "minFrequency", minFrequency);
+        if (release != null) {
+            service = spy(service);
+            doAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return invocation.callRealMethod();
+            }).when(service).load(any(), anyLong());
+        }
+        // 指标绑定到实际使用的实例
+        service.init();
+        return service;
+    }
+
+    private File newFile(String name) throws Exception {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(name.hashCode()).nextBytes(content);
+        Path path = tempDir.resolve(name);
+        Files.write(path, content);
+        File file = new File();
+        file.setId((long) name.hashCode());
+        file.setPath(path.toString());
+        file.setSize((long) FILE_SIZE);
+        file.setHash(name);
+        return file;
+    }
+
+    private double usedBytes() {
+        return meterRegistry.get("cloudown.download.cache.size").gauge().value();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void admitsOnlyAfterMinimumFrequency() throws Exception {
+        cache = newCache(DataSize.ofKilobytes(64), 2);
+        File file = newFile("a.bin");
+
+        assertNull(cache.get(file));
+        ByteBuffer loaded = cache.get(file);
+
+        assertNotNull(loaded);
+        assertTrue(Arrays.equals(Files.readAllBytes(Path.of(file.getPath())), bytes(loaded)));
+        assertEquals(FILE_SIZE, usedBytes());
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        cache = newCache(DataSize.ofKilobytes(64), 1, release);
+        File file = newFile("a.bin");
+
+        List<Future<ByteBuffer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.get(file)));
+        }
+        Thread.sleep(200);
+        // 加载进行中: 容量已按一个文件占用
+        assertEquals(FILE_SIZE, usedBytes());
+        release.countDown();
+
+        byte[] expected = Files.readAllBytes(Path.of(file.getPath()));
+        for (Future<ByteBuffer> result : results) {
+            ByteBuffer buffer = result.get(5, TimeUnit.SECONDS);
+            assertNotNull(buffer);
+            assertTrue(Arrays.equals(expected, bytes(buffer)));
+        }
+        verify(cache, times(1)).load(any(), anyLong());
+        assertEquals(FILE_SIZE, usedBytes());
+    }
+
+    @Test
+    void inFlightLoadsCountAgainstCapacity() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        cache = newCache(DataSize.ofKilobytes(32), 1, release);
+        File a = newFile("a.bin");
+        File b = newFile("b.bin");
+        File c = newFile("c.bin");
+
+        Future<ByteBuffer> first = executor.submit(() -> cache.get(a));
+        Future<ByteBuffer> second = executor.submit(() -> cache.get(b));
+        Thread.sleep(200);
+        assertEquals(2 * FILE_SIZE, usedBytes());
+
+        // 容量已被进行中的加载占满, 且无可淘汰条目: 不准入, 不分配
+        assertNull(cache.get(c));
+        assertTrue(usedBytes() <= 32 * 1024);
+
+        release.countDown();
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        verify(cache, times(2)).load(any(), anyLong());
+        assertEquals(2 * FILE_SIZE, usedBytes());
+    }
+
+    @Test
+    void invalidationDuringLoadDiscardsResultAndReleasesCapacity() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        cache = newCache(DataSize.ofKilobytes(64), 1, release);
+        File file = newFile("a.bin");
+
+        Future<ByteBuffer> loading = executor.submit(() -> cache.get(file));
+        Thread.sleep(200);
+        cache.invalidate(file.getPath());
+        release.countDown();
+        loading.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, usedBytes());
+        assertEquals(0, meterRegistry.get("cloudown.download.cache.entries").gauge().value());
+    }
+
+    @Test
+    void failedLoadReleasesCapacity() throws Exception {
+        cache = newCache(DataSize.ofKilobytes(64), 1);
+        File file = newFile("a.bin");
+        // 记录大小与实际文件不一致时不缓存
+        file.setSize(FILE_SIZE - 1L);
+
+        assertNull(cache.get(file));
+        assertEquals(0, usedBytes());
+    }
+}
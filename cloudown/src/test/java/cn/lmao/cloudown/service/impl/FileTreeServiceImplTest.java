@@ -0,0 +1,181 @@
+package cn.lmao.cloudown.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import cn.lmao.cloudown.excepiton.CustomException;
+import cn.lmao.cloudown.model.entity.File;
+import cn.lmao.cloudown.model.entity.File.FileStatus;
+import cn.lmao.cloudown.model.entity.User;
+import cn.lmao.cloudown.model.enums.ErrorOperationStatus;
+import cn.lmao.cloudown.repository.FileRepository;
+import cn.lmao.cloudown.service.FileTreeService;
+
+/**
+ * 回收站: 删除按批次记录, 还原只带回同一次删除的节点
+ * 测试树: 根 / A / B / c.txt, 根 / A / e.txt, 根 / D
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(FileTreeServiceImpl.class)
+class FileTreeServiceImplTest {
+
+    private static final String FOLDER_TYPE = "文件夹";
+    private static final String TEXT_TYPE = "文本文件";
+
+    @Autowired
+    private FileTreeService fileTreeService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+    private Long a;
+    private Long b;
+    private Long c;
+    private Long e;
+    private Long d;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("trash@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        a = node("A", FOLDER_TYPE, File.ROOT_ID);
+        b = node("B", FOLDER_TYPE, a);
+        c = node("c.txt", TEXT_TYPE, b);
+        e = node("e.txt", TEXT_TYPE, a);
+        d = node("D", FOLDER_TYPE, File.ROOT_ID);
+    }
+
+    private Long node(String name, String type, Long parentId) {
+        return fileTreeService.create(new File(name, "/data/" + name, null, type, user), parentId, false).getId();
+    }
+
+    private void trash(Long... ids) {
+        fileTreeService.trash(user, List.of(ids));
+        entityManager.clear();
+    }
+
+    private int restore(Long... ids) {
+        int restored = fileTreeService.restore(user, List.of(ids));
+        entityManager.clear();
+        return restored;
+    }
+
+    private FileStatus statusOf(Long id) {
+        return fileRepository.findById(id).orElseThrow().getStatus();
+    }
+
+    private void assertStatus(FileStatus status, Long... ids) {
+        for (Long id : ids) {
+            assertEquals(status, statusOf(id), "fileId=" + id);
+        }
+    }
+
+    @Test
+    void trashRecordsOneBatchPerOperation() {
+        trash(a, d);
+
+        String batch = fileRepository.findById(a).orElseThrow().getTrashBatch();
+        for (Long id : List.of(b, c, e, d)) {
+            assertEquals(batch, fileRepository.findById(id).orElseThrow().getTrashBatch());
+        }
+        assertStatus(FileStatus.DELETED, a, b, c, e, d);
+    }
+
+    @Test
+    void restoringParentKeepsEarlierDeletedChildInTrash() {
+        trash(c);
+        trash(a);
+
+        assertEquals(3, restore(a));
+
+        assertStatus(FileStatus.ACTIVE, a, b, e);
+        assertStatus(FileStatus.DELETED, c);
+        assertNull(fileRepository.findById(a).orElseThrow().getTrashBatch());
+    }
+
+    @Test
+    void earlierDeletedChildCanBeRestoredSeparately() {
+        trash(c);
+        trash(a);
+        restore(a);
+
+        assertEquals(1, restore(c));
+        assertStatus(FileStatus.ACTIVE, a, b, c, e);
+    }
+
+    @Test
+    void selectingParentAndEarlierDeletedChildRestoresBoth() {
+        trash(c);
+        trash(a);
+
+        assertEquals(4, restore(a, c));
+        assertStatus(FileStatus.ACTIVE, a, b, c, e);
+    }
+
+    @Test
+    void restoringNestedNodeRestoresDeletedAncestorsOnly() {
+        trash(a);
+
+        // B 及其子节点还原, 上级 A 随之还原以便可见, 同批次的兄弟节点 e 仍在回收站
+        assertEquals(3, restore(b));
+        assertStatus(FileStatus.ACTIVE, a, b, c);
+        assertStatus(FileStatus.DELETED, e);
+
+        assertEquals(1, restore(e));
+        assertStatus(FileStatus.ACTIVE, e);
+    }
+
+    @Test
+    void restoringOneRootOfABatchLeavesTheOthers() {
+        trash(a, d);
+
+        assertEquals(1, restore(d));
+        assertStatus(FileStatus.ACTIVE, d);
+        assertStatus(FileStatus.DELETED, a, b, c, e);
+    }
+
+    @Test
+    void legacyTrashWithoutBatchIsRestoredTogether() {
+        // 增加批次前删除的记录没有批次
+        entityManager.getEntityManager()
+                .createQuery("UPDATE File f SET f.status = :deleted, f.live = NULL WHERE f.id IN :ids")
+                .setParameter("deleted", FileStatus.DELETED)
+                .setParameter("ids", List.of(a, b, c, e))
+                .executeUpdate();
+        entityManager.clear();
+
+        assertEquals(4, restore(a));
+        assertStatus(FileStatus.ACTIVE, a, b, c, e);
+    }
+
+    @Test
+    void restoreIntoFolderWithSameNameIsRejected() {
+        trash(e);
+        node("e.txt", TEXT_TYPE, a);
+        entityManager.flush();
+
+        CustomException ex = assertThrows(CustomException.class, () -> restore(e));
+        assertEquals(ErrorOperationStatus.FILE_EXISTS.getCode(), ex.getCode());
+    }
+}
@@ -0,0 +1,101 @@
+package cn.lmao.cloudown.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 访问频率估计: 计数、上限、采样窗口结束时减半
+ */
+class FrequencySketchTest {
+
+    @Test
+    void unseenKeyHasZeroFrequency() {
+        FrequencySketch sketch = new FrequencySketch(64);
+
+        assertEquals(0, sketch.frequency("a"));
+    }
+
+    @Test
+    void incrementCountsEachAccess() {
+        FrequencySketch sketch = new FrequencySketch(64);
+
+        for (int i = 1; i <= 5; i++) {
+            sketch.increment("a");
+            assertEquals(i, sketch.frequency("a"));
+        }
+        assertEquals(0, sketch.frequency("b"));
+    }
+
+    @Test
+    void frequencySaturatesAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(64);
+
+        for (int i = 0; i < 40; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    void saturatedIncrementsDoNotAdvanceTheSampleWindow() {
+        FrequencySketch sketch = new FrequencySketch(64);
+
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment("a");
+        }
+        // 只有前 15 次增加计入采样窗口, 不会因单个热点键触发减半
+        assertEquals(15, additions(sketch));
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    void countersAreHalvedWhenSampleWindowIsReached() {
+        // expectedEntries=16 时宽度为 16, 采样窗口为 160 次增加
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 12; i++) {
+            sketch.increment("hot");
+        }
+
+        int key = 0;
+        while (additions(sketch) < 159) {
+            sketch.increment("k" + key++);
+        }
+        int before = sketch.frequency("hot");
+
+        // 第 160 次计入的增加触发减半
+        while (additions(sketch) == 159) {
+            sketch.increment("k" + key++);
+        }
+        assertEquals(80, additions(sketch));
+        int after = sketch.frequency("hot");
+        // 触发键可能与 hot 共享计数器, 允许减半前多计一次
+        assertTrue(after == before / 2 || after == (before + 1) / 2, before + " -> " + after);
+    }
+
+    @Test
+    void frequencyAccumulatesAgainAfterHalving() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot");
+        }
+        // 持续增加其他键直至减半发生(计数回落)
+        int key = 0;
+        int previous = additions(sketch);
+        while (additions(sketch) >= previous) {
+            previous = additions(sketch);
+            sketch.increment("k" + key++);
+        }
+        int halved = sketch.frequency("hot");
+        assertTrue(halved < 10, "应已减半: " + halved);
+
+        sketch.increment("hot");
+        assertTrue(sketch.frequency("hot") > halved);
+    }
+
+    private static int additions(FrequencySketch sketch) {
+        return (int) ReflectionTestUtils.getField(sketch, "additions");
+    }
+}
@@ -0,0 +1,76 @@
+package cn.lmao.cloudown.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Merkle 根计算
+ * 测试向量的叶子为 SHA-256("chunk-0") ... SHA-256("chunk-4"), 期望值与前端
+ * cloud-fronted/src/utils/chunkUpload.js 中 calculateMerkleRoot 的结果一致; 任一端修改规则都需同步更新
+ */
+class MerkleTreeUtilTest {
+
+    private static List<byte[]> leaves(int count) throws Exception {
+        List<byte[]> leaves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            leaves.add(sha256(("chunk-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        return leaves;
+    }
+
+    private static byte[] sha256(byte[]... parts) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (byte[] part : parts) {
+            digest.update(part);
+        }
+        return digest.digest();
+    }
+
+    private static String root(int count) throws Exception {
+        return FileUtil.bytesToHex(MerkleTreeUtil.computeRoot(leaves(count)));
+    }
+
+    @Test
+    void singleLeafIsTheRoot() throws Exception {
+        assertEquals("b18efa847f7a3fa48fe0aafd4a6250aa5129740e05126859377af20cedafdeee", root(1));
+    }
+
+    @Test
+    void twoLeavesAreHashedTogether() throws Exception {
+        assertEquals("86cfdf0ff7b2c8a9fb80ed3faa855772633dcc46b5aa6f0785088e0d453454f9", root(2));
+    }
+
+    @Test
+    void oddLeafIsPromotedUnchanged() throws Exception {
+        assertEquals("fb83a4706bf244f08d3560a57881c4fbc66a91ef694ef41093498dace3e05ea5", root(3));
+
+        // 第三个叶子直接提升, 不与自身配对
+        List<byte[]> leaves = leaves(3);
+        byte[] expected = sha256(sha256(leaves.get(0), leaves.get(1)), leaves.get(2));
+        assertArrayEquals(expected, MerkleTreeUtil.computeRoot(leaves));
+    }
+
+    @Test
+    void oddNodesArePromotedOnEveryLevel() throws Exception {
+        assertEquals("d8ad45ca067b59b78d641b364317aa17639b629a5a90dbdb94345771abfc96b5", root(5));
+
+        // 第一层提升叶子4, 第二层再次提升
+        List<byte[]> l = leaves(5);
+        byte[] expected = sha256(sha256(sha256(l.get(0), l.get(1)), sha256(l.get(2), l.get(3))), l.get(4));
+        assertArrayEquals(expected, MerkleTreeUtil.computeRoot(l));
+    }
+
+    @Test
+    void emptyLeavesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MerkleTreeUtil.computeRoot(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> MerkleTreeUtil.computeRoot(null));
+    }
+}
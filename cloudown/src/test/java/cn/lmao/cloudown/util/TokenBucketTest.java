@@ -0,0 +1,120 @@
+package cn.lmao.cloudown.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 令牌桶: 补充、容量上限、归还及多桶取令牌
+ * 使用注入的时钟, 不依赖真实时间
+ */
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private TokenBucket bucket(long ratePerSecond, long capacity) {
+        return new TokenBucket(ratePerSecond, capacity, now::get);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void startsFullAndGrantsAtMostAvailable() {
+        TokenBucket bucket = bucket(1000, 4000);
+
+        assertEquals(4000, bucket.take(5000));
+        assertEquals(0, bucket.take(1));
+    }
+
+    @Test
+    void refillsAtConfiguredRate() {
+        TokenBucket bucket = bucket(1000, 4000);
+        bucket.take(4000);
+
+        advanceMillis(250);
+        assertEquals(250, bucket.take(1000));
+
+        advanceMillis(1);
+        assertEquals(1, bucket.take(1000));
+    }
+
+    @Test
+    void refillIsCappedAtCapacity() {
+        TokenBucket bucket = bucket(1000, 4000);
+        bucket.take(4000);
+
+        advanceMillis(60_000);
+        assertEquals(4000, bucket.take(Long.MAX_VALUE));
+    }
+
+    @Test
+    void giveBackRestoresTokensUpToCapacity() {
+        TokenBucket bucket = bucket(1000, 4000);
+        bucket.take(1000);
+
+        bucket.giveBack(400);
+        assertEquals(3400, bucket.take(Long.MAX_VALUE));
+
+        bucket.giveBack(10_000);
+        assertEquals(4000, bucket.take(Long.MAX_VALUE));
+    }
+
+    @Test
+    void nanosUntilReflectsMissingTokens() {
+        TokenBucket bucket = bucket(1000, 4000);
+        assertEquals(0, bucket.nanosUntil(4000));
+
+        bucket.take(4000);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), bucket.nanosUntil(250));
+        // 超过容量的请求按容量计算, 不会永远等待
+        assertEquals(TimeUnit.SECONDS.toNanos(4), bucket.nanosUntil(1_000_000));
+
+        advanceMillis(100);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(150), bucket.nanosUntil(250));
+    }
+
+    @Test
+    void takeAllGrantsTheSmallestAvailableAndGivesBackTheRest() {
+        TokenBucket user = bucket(1000, 4000);
+        TokenBucket global = bucket(1000, 4000);
+        global.take(3000);
+
+        // 全局桶只剩 1000, 用户桶多取的 1500 归还
+        assertEquals(1000, TokenBucket.takeAll(new TokenBucket[] { user, global }, 2500, 100));
+        assertEquals(3000, user.take(Long.MAX_VALUE));
+        assertEquals(0, global.take(Long.MAX_VALUE));
+    }
+
+    @Test
+    void takeAllBelowMinimumGivesEverythingBack() {
+        TokenBucket user = bucket(1000, 4000);
+        TokenBucket global = bucket(1000, 4000);
+        global.take(3950);
+
+        // 全局桶仅 50, 低于最小写出量: 返回0且两个桶均不扣除
+        assertEquals(0, TokenBucket.takeAll(new TokenBucket[] { user, global }, 2500, 100));
+        assertEquals(4000, user.take(Long.MAX_VALUE));
+        assertEquals(50, global.take(Long.MAX_VALUE));
+    }
+
+    @Test
+    void takeAllBelowMinimumOnFirstBucketTakesNothing() {
+        TokenBucket user = bucket(1000, 4000);
+        TokenBucket global = bucket(1000, 4000);
+        user.take(3990);
+
+        assertEquals(0, TokenBucket.takeAll(new TokenBucket[] { user, global }, 2500, 100));
+        assertEquals(10, user.take(Long.MAX_VALUE));
+        assertEquals(4000, global.take(Long.MAX_VALUE));
+    }
+
+    @Test
+    void takeAllWithoutBucketsGrantsEverything() {
+        assertEquals(2500, TokenBucket.takeAll(new TokenBucket[0], 2500, 100));
+    }
+}